@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+    Runs the forecast loaders' query while a sync writes, the way the app does when a sync lands
+    with the forecast on screen.
+ */
+public class TestDbConcurrency extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestDbConcurrency.class.getSimpleName();
+
+    private static final long DAY_IN_MILLIS = 24L * 60 * 60 * 1000;
+    private static final int DAYS = 14;
+
+    private WeatherDbHelper mDbHelper;
+    private long mLocationRowId;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+        mDbHelper = new WeatherDbHelper(mContext);
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        mLocationRowId = db.insert(WeatherContract.LocationEntry.TABLE_NAME, null,
+                TestUtilities.createNorthPoleLocationValues());
+        writeForecast(db);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mDbHelper.close();
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+        super.tearDown();
+    }
+
+    public void testJournalMode() {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        Cursor cursor = db.rawQuery("PRAGMA journal_mode", null);
+        assertTrue(cursor.moveToFirst());
+        String journalMode = cursor.getString(0);
+        cursor.close();
+        if (mDbHelper.isWriteAheadLogging()) {
+            assertEquals("Error: The database is not logging ahead", "wal",
+                    journalMode.toLowerCase());
+        }
+    }
+
+    /*
+        A loader's query must not wait for a sync that holds a write transaction open.
+     */
+    public void testReadDuringWriteTransaction() throws Exception {
+        if (!mDbHelper.isWriteAheadLogging()) {
+            Log.v(LOG_TAG, "Skipped, readers wait for writers without write-ahead logging");
+            return;
+        }
+        final SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        final CountDownLatch inTransaction = new CountDownLatch(1);
+        final CountDownLatch readDone = new CountDownLatch(1);
+
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                db.beginTransaction();
+                try {
+                    writeForecast(db);
+                    inTransaction.countDown();
+                    readDone.await(10, TimeUnit.SECONDS);
+                    db.setTransactionSuccessful();
+                } catch (InterruptedException e) {
+                    // roll back
+                } finally {
+                    db.endTransaction();
+                }
+            }
+        };
+        writer.start();
+        assertTrue(inTransaction.await(10, TimeUnit.SECONDS));
+
+        long start = SystemClock.elapsedRealtime();
+        int rows = queryForecast(db);
+        long elapsed = SystemClock.elapsedRealtime() - start;
+        readDone.countDown();
+        writer.join();
+
+        Log.v(LOG_TAG, "Read during write transaction took " + elapsed + "ms");
+        assertEquals("Error: The reader should see the last committed forecast", DAYS, rows);
+        assertTrue("Error: The reader waited for the writer, " + elapsed + "ms",
+                elapsed < 1000);
+    }
+
+    /*
+        Reader latency while syncs run back to back.  Logged for comparing runs; the assertion
+        only catches readers being starved outright.
+     */
+    public void testReaderLatencyDuringSyncs() throws Exception {
+        final SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        final AtomicBoolean running = new AtomicBoolean(true);
+
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                while (running.get()) {
+                    db.beginTransaction();
+                    try {
+                        writeForecast(db);
+                        db.setTransactionSuccessful();
+                    } finally {
+                        db.endTransaction();
+                    }
+                }
+            }
+        };
+        writer.start();
+
+        final int reads = 200;
+        long[] latencies = new long[reads];
+        try {
+            for (int i = 0; i < reads; i++) {
+                long start = System.nanoTime();
+                queryForecast(db);
+                latencies[i] = System.nanoTime() - start;
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+
+        Arrays.sort(latencies);
+        long median = TimeUnit.NANOSECONDS.toMicros(latencies[reads / 2]);
+        long p95 = TimeUnit.NANOSECONDS.toMicros(latencies[reads * 95 / 100]);
+        long max = TimeUnit.NANOSECONDS.toMicros(latencies[reads - 1]);
+        Log.i(LOG_TAG, "Reader latency during syncs (wal=" + mDbHelper.isWriteAheadLogging() +
+                "): median " + median + "us, p95 " + p95 + "us, max " + max + "us");
+        assertTrue("Error: Readers starved during syncs, p95 " + p95 + "us",
+                p95 < TimeUnit.SECONDS.toMicros(1));
+    }
+
+    // What a sync writes: a new forecast for every day, and old days deleted
+    private void writeForecast(SQLiteDatabase db) {
+        for (int day = 0; day < DAYS; day++) {
+            ContentValues values = TestUtilities.createWeatherValues(mLocationRowId);
+            values.put(WeatherEntry.COLUMN_DATE, TestUtilities.TEST_DATE + day * DAY_IN_MILLIS);
+            db.insert(WeatherEntry.TABLE_NAME, null, values);
+        }
+        db.delete(WeatherEntry.TABLE_NAME, WeatherEntry.COLUMN_DATE + " < ?",
+                new String[]{Long.toString(TestUtilities.TEST_DATE)});
+    }
+
+    // What the forecast loader asks for
+    private int queryForecast(SQLiteDatabase db) {
+        Cursor cursor = WeatherProvider.sWeatherByLocationSettingQueryBuilder.query(db,
+                null,
+                WeatherProvider.sLocationSettingWithStartDateSelection,
+                new String[]{TestUtilities.TEST_LOCATION, Long.toString(TestUtilities.TEST_DATE)},
+                null,
+                null,
+                WeatherEntry.COLUMN_DATE + " ASC");
+        try {
+            // fill the window, like the list does
+            int rows = 0;
+            while (cursor.moveToNext()) {
+                rows++;
+            }
+            return rows;
+        } finally {
+            cursor.close();
+        }
+    }
+}
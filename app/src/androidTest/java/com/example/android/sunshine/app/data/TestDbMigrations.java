@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+/*
+    Upgrades a database of every schema version we ever shipped and checks that the data
+    survives and that the result matches a fresh install.
+ */
+public class TestDbMigrations extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestDbMigrations.class.getSimpleName();
+
+    // A copy of the schema of every version we can migrate from, starting with
+    // WeatherDbMigrations.OLDEST_MIGRATABLE_VERSION.  Never change these, add the new version.
+    private static final String[][] HISTORICAL_SCHEMAS = {
+            // version 2
+            {
+                    "CREATE TABLE location (" +
+                            "_id INTEGER PRIMARY KEY," +
+                            "location_setting TEXT UNIQUE NOT NULL, " +
+                            "city_name TEXT NOT NULL, " +
+                            "coord_lat REAL NOT NULL, " +
+                            "coord_long REAL NOT NULL );",
+                    "CREATE TABLE weather (" +
+                            "_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                            "location_id INTEGER NOT NULL, " +
+                            "date INTEGER NOT NULL, " +
+                            "short_desc TEXT NOT NULL, " +
+                            "weather_id INTEGER NOT NULL," +
+                            "min REAL NOT NULL, " +
+                            "max REAL NOT NULL, " +
+                            "humidity REAL NOT NULL, " +
+                            "pressure REAL NOT NULL, " +
+                            "wind REAL NOT NULL, " +
+                            "degrees REAL NOT NULL, " +
+                            " FOREIGN KEY (location_id) REFERENCES location (_id), " +
+                            " UNIQUE (date, location_id) ON CONFLICT REPLACE);"
+            },
+    };
+
+    void deleteTheDatabase() {
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        deleteTheDatabase();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteTheDatabase();
+        super.tearDown();
+    }
+
+    public void testMigrationsReachCurrentVersion() {
+        assertEquals("Error: Add a migration for every new database version",
+                WeatherDbHelper.DATABASE_VERSION, WeatherDbMigrations.getLatestVersion());
+        assertEquals("Error: Add the schema of every version to HISTORICAL_SCHEMAS",
+                WeatherDbHelper.DATABASE_VERSION - WeatherDbMigrations.OLDEST_MIGRATABLE_VERSION,
+                HISTORICAL_SCHEMAS.length);
+    }
+
+    public void testUpgradeFromEveryVersion() {
+        ArrayList<String> expectedSchema = getFreshSchema();
+
+        for (int i = 0; i < HISTORICAL_SCHEMAS.length; i++) {
+            int version = WeatherDbMigrations.OLDEST_MIGRATABLE_VERSION + i;
+            deleteTheDatabase();
+
+            SQLiteDatabase oldDb = mContext.openOrCreateDatabase(
+                    WeatherDbHelper.DATABASE_NAME, 0, null);
+            for (String statement : HISTORICAL_SCHEMAS[i]) {
+                oldDb.execSQL(statement);
+            }
+            ContentValues locationValues = TestUtilities.createNorthPoleLocationValues();
+            long locationRowId = oldDb.insert(LocationEntry.TABLE_NAME, null, locationValues);
+            assertTrue(locationRowId != -1);
+            ContentValues weatherValues = TestUtilities.createWeatherValues(locationRowId);
+            assertTrue(oldDb.insert(WeatherEntry.TABLE_NAME, null, weatherValues) != -1);
+            oldDb.setVersion(version);
+            oldDb.close();
+
+            WeatherDbHelper dbHelper = new WeatherDbHelper(mContext);
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            assertEquals(WeatherDbHelper.DATABASE_VERSION, db.getVersion());
+            assertEquals("Error: Upgrading from version " + version + " changed the schema",
+                    expectedSchema, describeSchema(db));
+
+            Cursor locationCursor = db.query(LocationEntry.TABLE_NAME,
+                    null, null, null, null, null, null);
+            TestUtilities.validateCursor("Error: Location lost upgrading from version " + version,
+                    locationCursor, locationValues);
+            Cursor weatherCursor = db.query(WeatherEntry.TABLE_NAME,
+                    null, null, null, null, null, null);
+            TestUtilities.validateCursor("Error: Weather lost upgrading from version " + version,
+                    weatherCursor, weatherValues);
+            dbHelper.close();
+        }
+    }
+
+    /*
+        Versions we have no migration for are only a cache, they get created again.
+     */
+    public void testUpgradeFromUnsupportedVersion() {
+        SQLiteDatabase oldDb = mContext.openOrCreateDatabase(
+                WeatherDbHelper.DATABASE_NAME, 0, null);
+        oldDb.execSQL("CREATE TABLE weather (_id INTEGER PRIMARY KEY, date TEXT NOT NULL);");
+        oldDb.execSQL("INSERT INTO weather (date) VALUES ('20141220');");
+        oldDb.setVersion(WeatherDbMigrations.OLDEST_MIGRATABLE_VERSION - 1);
+        oldDb.close();
+
+        WeatherDbHelper dbHelper = new WeatherDbHelper(mContext);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        assertEquals(getFreshSchema(), describeSchema(db));
+        Cursor cursor = db.query(WeatherEntry.TABLE_NAME, null, null, null, null, null, null);
+        assertEquals("Error: Unsupported versions should start over", 0, cursor.getCount());
+        cursor.close();
+        dbHelper.close();
+    }
+
+    private ArrayList<String> getFreshSchema() {
+        SQLiteDatabase freshDb = SQLiteDatabase.create(null);
+        new WeatherDbHelper(mContext).onCreate(freshDb);
+        ArrayList<String> schema = describeSchema(freshDb);
+        freshDb.close();
+        return schema;
+    }
+
+    /*
+        The columns and indices of every table, sorted.  Compared instead of the CREATE
+        statements, since a migrated table and a freshly created one differ in their SQL text.
+     */
+    static ArrayList<String> describeSchema(SQLiteDatabase db) {
+        ArrayList<String> schema = new ArrayList<String>();
+        Cursor tables = db.rawQuery("SELECT name FROM sqlite_master WHERE type='table' AND " +
+                "name NOT LIKE 'sqlite_%' AND name != 'android_metadata'", null);
+        try {
+            while (tables.moveToNext()) {
+                String table = tables.getString(0);
+                Cursor columns = db.rawQuery("PRAGMA table_info(" + table + ")", null);
+                try {
+                    while (columns.moveToNext()) {
+                        schema.add(table + " column " +
+                                columns.getString(columns.getColumnIndex("name")) + " " +
+                                columns.getString(columns.getColumnIndex("type")) + " notnull=" +
+                                columns.getInt(columns.getColumnIndex("notnull")) + " pk=" +
+                                columns.getInt(columns.getColumnIndex("pk")) + " default=" +
+                                columns.getString(columns.getColumnIndex("dflt_value")));
+                    }
+                } finally {
+                    columns.close();
+                }
+
+                Cursor indices = db.rawQuery("PRAGMA index_list(" + table + ")", null);
+                try {
+                    while (indices.moveToNext()) {
+                        String index = indices.getString(indices.getColumnIndex("name"));
+                        StringBuilder description = new StringBuilder(table).append(" index");
+                        // auto indices are named after the order of constraints, not their use
+                        if (!index.startsWith("sqlite_autoindex_")) {
+                            description.append(' ').append(index);
+                        }
+                        description.append(" unique=")
+                                .append(indices.getInt(indices.getColumnIndex("unique")));
+                        Cursor indexColumns = db.rawQuery("PRAGMA index_info(" + index + ")",
+                                null);
+                        try {
+                            while (indexColumns.moveToNext()) {
+                                description.append(' ').append(indexColumns.getString(
+                                        indexColumns.getColumnIndex("name")));
+                            }
+                        } finally {
+                            indexColumns.close();
+                        }
+                        schema.add(description.toString());
+                    }
+                } finally {
+                    indices.close();
+                }
+            }
+        } finally {
+            tables.close();
+        }
+        Collections.sort(schema);
+        return schema;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.HandlerThread;
+import android.test.AndroidTestCase;
+import android.test.mock.MockContentResolver;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestNotificationCoalescer extends AndroidTestCase {
+
+    private static final Uri LOCATION_WEATHER =
+            WeatherEntry.buildWeatherLocation(TestUtilities.TEST_LOCATION);
+    private static final Uri LOCATION_DAY_WEATHER =
+            WeatherEntry.buildWeatherLocationWithDate(TestUtilities.TEST_LOCATION,
+                    TestUtilities.TEST_DATE);
+    private static final Uri OTHER_LOCATION_WEATHER = WeatherEntry.buildWeatherLocation("94043");
+
+    private HandlerThread mThread;
+    private RecordingResolver mResolver;
+    private NotificationCoalescer mCoalescer;
+
+    /*
+        Keeps the URIs it is asked to notify instead of notifying anybody.
+     */
+    static class RecordingResolver extends MockContentResolver {
+        final List<Uri> notified = new ArrayList<Uri>();
+
+        @Override
+        public void notifyChange(Uri uri, ContentObserver observer, boolean syncToNetwork) {
+            synchronized (notified) {
+                notified.add(uri);
+            }
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mThread = new HandlerThread("NotificationCoalescerTest");
+        mThread.start();
+        mResolver = new RecordingResolver();
+        mCoalescer = new NotificationCoalescer(mResolver, mThread.getLooper());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mThread.quit();
+        super.tearDown();
+    }
+
+    public void testBurstIsSentOnce() throws InterruptedException {
+        for (int i = 0; i < 10; i++) {
+            mCoalescer.notifyChange(LOCATION_WEATHER);
+            mCoalescer.notifyChange(OTHER_LOCATION_WEATHER);
+        }
+        assertTrue("Error: Notifications went out before the window closed",
+                mResolver.notified.isEmpty());
+
+        Thread.sleep(NotificationCoalescer.WINDOW_MS * 5);
+        assertEquals(Arrays.asList(LOCATION_WEATHER, OTHER_LOCATION_WEATHER), mResolver.notified);
+    }
+
+    public void testFlushSendsPending() {
+        mCoalescer.notifyChange(LocationEntry.CONTENT_URI);
+        mCoalescer.flush();
+        assertEquals(Arrays.asList(LocationEntry.CONTENT_URI), mResolver.notified);
+
+        // nothing left for the window to send
+        mCoalescer.flush();
+        assertEquals(1, mResolver.notified.size());
+    }
+
+    public void testCollapseDropsCoveredUris() {
+        assertEquals(Arrays.asList(LOCATION_WEATHER, OTHER_LOCATION_WEATHER),
+                NotificationCoalescer.collapse(Arrays.asList(
+                        LOCATION_DAY_WEATHER, LOCATION_WEATHER, OTHER_LOCATION_WEATHER)));
+        assertEquals(Arrays.asList(WeatherEntry.CONTENT_URI, LocationEntry.CONTENT_URI),
+                NotificationCoalescer.collapse(Arrays.asList(
+                        LOCATION_WEATHER, WeatherEntry.CONTENT_URI, LocationEntry.CONTENT_URI,
+                        OTHER_LOCATION_WEATHER)));
+    }
+}
@@ -16,8 +16,11 @@
 package com.example.android.sunshine.app.data;
 
 import android.content.ComponentName;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.pm.PackageManager;
 import android.content.pm.ProviderInfo;
 import android.database.Cursor;
@@ -30,6 +33,8 @@ import android.util.Log;
 import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
 import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 
+import java.util.ArrayList;
+
 /*
     Note: This is not a complete set of tests of the Sunshine ContentProvider, but it does test
     that at least the basic functionality has been implemented correctly.
@@ -512,4 +517,207 @@ public class TestProvider extends AndroidTestCase {
         }
         cursor.close();
     }
+
+    /*
+        Writing the same days again leaves the rows alone, and a day with new values is updated
+        in place: it keeps its _ID and is the only one reported as changed.
+     */
+    public void testBulkInsertWritesOnlyChangedRows() {
+        WeatherDbHelper dbHelper = new WeatherDbHelper(mContext);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long locationRowId = db.insert(LocationEntry.TABLE_NAME, null,
+                TestUtilities.createNorthPoleLocationValues());
+        assertTrue(locationRowId != -1);
+
+        WeatherBulkInserter inserter = new WeatherBulkInserter(db);
+        int written = inserter.insert(createBulkInsertWeatherValues(locationRowId));
+        inserter.finish();
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, written);
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, inserter.inserted);
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, inserter.getChangedCount());
+
+        inserter = new WeatherBulkInserter(db);
+        written = inserter.insert(createBulkInsertWeatherValues(locationRowId));
+        inserter.finish();
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, written);
+        assertEquals(0, inserter.inserted);
+        assertEquals(0, inserter.updated);
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, inserter.unchanged);
+        assertEquals(0, inserter.getChangedCount());
+
+        ContentValues[] again = createBulkInsertWeatherValues(locationRowId);
+        int changed = BULK_INSERT_RECORDS_TO_INSERT / 2;
+        again[changed].put(WeatherEntry.COLUMN_MAX_TEMP, 1.5);
+        long changedDate = again[changed].getAsLong(WeatherEntry.COLUMN_DATE);
+        long idBefore = queryWeatherId(db, changedDate);
+
+        inserter = new WeatherBulkInserter(db);
+        written = inserter.insert(again);
+        inserter.finish();
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, written);
+        assertEquals(0, inserter.inserted);
+        assertEquals(1, inserter.updated);
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT - 1, inserter.unchanged);
+        assertEquals(1, inserter.getChangedCount());
+        assertEquals(locationRowId, inserter.getChangedLocationId(0));
+        assertEquals(changedDate, inserter.getChangedDate(0));
+        assertEquals("The updated row should keep its _ID", idBefore,
+                queryWeatherId(db, changedDate));
+
+        Cursor cursor = db.query(WeatherEntry.TABLE_NAME, null, null, null, null, null,
+                WeatherEntry.COLUMN_DATE + " ASC");
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, cursor.getCount());
+        cursor.moveToFirst();
+        for (int i = 0; i < BULK_INSERT_RECORDS_TO_INSERT; i++, cursor.moveToNext()) {
+            TestUtilities.validateCurrentRecord(
+                    "testBulkInsertWritesOnlyChangedRows.  Error validating WeatherEntry " + i,
+                    cursor, again[i]);
+        }
+        cursor.close();
+        dbHelper.close();
+    }
+
+    private static long queryWeatherId(SQLiteDatabase db, long date) {
+        Cursor cursor = db.query(WeatherEntry.TABLE_NAME, new String[]{WeatherEntry._ID},
+                WeatherEntry.COLUMN_DATE + " = ?", new String[]{Long.toString(date)},
+                null, null, null);
+        try {
+            assertTrue("No weather row for " + date, cursor.moveToFirst());
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /*
+        Upserting the same location setting twice updates the one row instead of adding another.
+     */
+    public void testUpsertLocation() {
+        ContentValues testValues = TestUtilities.createNorthPoleLocationValues();
+        Uri first = mContext.getContentResolver().insert(LocationEntry.CONTENT_UPSERT_URI,
+                testValues);
+        long locationRowId = ContentUris.parseId(first);
+        assertTrue(locationRowId != -1);
+
+        testValues.put(LocationEntry.COLUMN_CITY_NAME, "Santa's Village");
+        Uri second = mContext.getContentResolver().insert(LocationEntry.CONTENT_UPSERT_URI,
+                testValues);
+        assertEquals("Error: Upsert of an existing location returned another row",
+                locationRowId, ContentUris.parseId(second));
+
+        Cursor cursor = mContext.getContentResolver().query(LocationEntry.CONTENT_URI,
+                null, null, null, null);
+        TestUtilities.validateCursor("testUpsertLocation.  Error validating LocationEntry.",
+                cursor, testValues);
+    }
+
+    /*
+        The provider remembers the row of an upserted location.  Once the row is deleted, through
+        the provider or not, upserting the setting again has to give the new row.
+     */
+    public void testUpsertLocationAfterDelete() {
+        ContentValues testValues = TestUtilities.createNorthPoleLocationValues();
+        mContext.getContentResolver().insert(LocationEntry.CONTENT_UPSERT_URI, testValues);
+
+        deleteAllRecordsFromProvider();
+        long locationRowId = ContentUris.parseId(mContext.getContentResolver().insert(
+                LocationEntry.CONTENT_UPSERT_URI, testValues));
+        assertLocationRow(locationRowId, testValues);
+
+        // behind the back of the provider
+        WeatherDbHelper dbHelper = new WeatherDbHelper(mContext);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.delete(LocationEntry.TABLE_NAME, null, null);
+        dbHelper.close();
+
+        locationRowId = ContentUris.parseId(mContext.getContentResolver().insert(
+                LocationEntry.CONTENT_UPSERT_URI, testValues));
+        assertLocationRow(locationRowId, testValues);
+    }
+
+    private void assertLocationRow(long locationRowId, ContentValues expectedValues) {
+        Cursor cursor = mContext.getContentResolver().query(LocationEntry.CONTENT_URI, null,
+                LocationEntry._ID + " = ?", new String[]{Long.toString(locationRowId)}, null);
+        TestUtilities.validateCursor("Error: The upsert returned the wrong location row",
+                cursor, expectedValues);
+    }
+
+    /*
+        A whole sync goes through applyBatch: the location, its days and the pruning of old days.
+     */
+    public void testApplyBatch() throws Exception {
+        ContentValues[] weatherValues = createBulkInsertWeatherValues(0);
+
+        TestUtilities.TestContentObserver weatherObserver = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(WeatherEntry.CONTENT_URI, true,
+                weatherObserver);
+
+        ContentProviderResult[] results = mContext.getContentResolver().applyBatch(
+                WeatherContract.CONTENT_AUTHORITY, buildSyncOperations(weatherValues));
+
+        weatherObserver.waitForNotificationOrFail();
+        mContext.getContentResolver().unregisterContentObserver(weatherObserver);
+
+        long locationRowId = ContentUris.parseId(results[0].uri);
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherEntry.buildWeatherLocation(TestUtilities.TEST_LOCATION),
+                null, null, null, WeatherEntry.COLUMN_DATE + " ASC");
+        // the first day was pruned by the last operation
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT - 1, cursor.getCount());
+        cursor.moveToFirst();
+        for (int i = 1; i < BULK_INSERT_RECORDS_TO_INSERT; i++, cursor.moveToNext()) {
+            weatherValues[i].put(WeatherEntry.COLUMN_LOC_KEY, locationRowId);
+            weatherValues[i].put(WeatherEntry.COLUMN_DATE, WeatherContract.normalizeDate(
+                    weatherValues[i].getAsLong(WeatherEntry.COLUMN_DATE)));
+            TestUtilities.validateCurrentRecord("testApplyBatch.  Error validating WeatherEntry " + i,
+                    cursor, weatherValues[i]);
+        }
+        cursor.close();
+    }
+
+    /*
+        When one operation fails nothing of the batch is kept.
+     */
+    public void testApplyBatchRollsBack() throws Exception {
+        ArrayList<ContentProviderOperation> operations =
+                buildSyncOperations(createBulkInsertWeatherValues(0));
+        // fails, since the batch itself just wrote rows
+        operations.add(ContentProviderOperation.newAssertQuery(WeatherEntry.CONTENT_URI)
+                .withExpectedCount(0)
+                .build());
+
+        try {
+            mContext.getContentResolver().applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+            fail("Error: The failing operation of the batch didn't throw");
+        } catch (OperationApplicationException expected) {
+        }
+
+        Cursor cursor = mContext.getContentResolver().query(WeatherEntry.CONTENT_URI,
+                null, null, null, null);
+        assertEquals("Error: Weather of a failed batch was kept", 0, cursor.getCount());
+        cursor.close();
+        cursor = mContext.getContentResolver().query(LocationEntry.CONTENT_URI,
+                null, null, null, null);
+        assertEquals("Error: The location of a failed batch was kept", 0, cursor.getCount());
+        cursor.close();
+    }
+
+    private static ArrayList<ContentProviderOperation> buildSyncOperations(
+            ContentValues[] weatherValues) {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+        operations.add(ContentProviderOperation.newInsert(LocationEntry.CONTENT_UPSERT_URI)
+                .withValues(TestUtilities.createNorthPoleLocationValues())
+                .build());
+        for (ContentValues values : weatherValues) {
+            operations.add(ContentProviderOperation.newInsert(WeatherEntry.CONTENT_URI)
+                    .withValues(values)
+                    .withValueBackReference(WeatherEntry.COLUMN_LOC_KEY, 0)
+                    .build());
+        }
+        operations.add(ContentProviderOperation.newDelete(WeatherEntry.CONTENT_URI)
+                .withSelection(WeatherEntry.COLUMN_DATE + " <= ?",
+                        new String[]{Long.toString(TestUtilities.TEST_DATE)})
+                .build());
+        return operations;
+    }
 }
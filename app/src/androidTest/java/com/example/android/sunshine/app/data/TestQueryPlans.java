@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.regex.Pattern;
+
+/*
+    Checks the query plan SQLite picks for every route of the provider, so that a schema change
+    can't quietly turn an index lookup into a scan over the whole forecast history.
+ */
+public class TestQueryPlans extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestQueryPlans.class.getSimpleName();
+
+    private static final String WEATHER_ORDER = WeatherEntry.COLUMN_DATE + " ASC";
+
+    // A plan step reading a whole table, e.g. "SCAN TABLE weather" or "SCAN weather USING INDEX"
+    private static final Pattern FULL_SCAN = Pattern.compile("^SCAN (TABLE )?\\w+");
+    // Per location weather lookups must go through an index on the location
+    private static final Pattern WEATHER_BY_LOCATION =
+            Pattern.compile("^SEARCH (TABLE )?" + WeatherEntry.TABLE_NAME + " USING .*\\b" +
+                    WeatherEntry.COLUMN_LOC_KEY + "=\\?");
+
+    private SQLiteDatabase mDb;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+        mDb = new WeatherDbHelper(mContext).getWritableDatabase();
+
+        // A few locations with a long history, so the tables look like they do after months
+        ContentValues locationValues = TestUtilities.createNorthPoleLocationValues();
+        long firstLocationId = mDb.insert(LocationEntry.TABLE_NAME, null, locationValues);
+        locationValues.put(LocationEntry.COLUMN_LOCATION_SETTING, "94043");
+        long secondLocationId = mDb.insert(LocationEntry.TABLE_NAME, null, locationValues);
+
+        mDb.beginTransaction();
+        try {
+            for (int day = 0; day < 365; day++) {
+                ContentValues weatherValues = TestUtilities.createWeatherValues(firstLocationId);
+                long date = TestUtilities.TEST_DATE + day * 24L * 60 * 60 * 1000;
+                weatherValues.put(WeatherEntry.COLUMN_DATE, date);
+                mDb.insert(WeatherEntry.TABLE_NAME, null, weatherValues);
+                weatherValues.put(WeatherEntry.COLUMN_LOC_KEY, secondLocationId);
+                mDb.insert(WeatherEntry.TABLE_NAME, null, weatherValues);
+            }
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mDb.close();
+        super.tearDown();
+    }
+
+    /*
+        Every route registered with the provider's UriMatcher needs a plan check below.  If this
+        fails, a route was added without one: add its check and its code here.
+     */
+    public void testAllRoutesCovered() {
+        HashSet<Integer> checked = new HashSet<Integer>();
+        checked.add(WeatherProvider.WEATHER);
+        checked.add(WeatherProvider.WEATHER_WITH_LOCATION);
+        checked.add(WeatherProvider.WEATHER_WITH_LOCATION_AND_DATE);
+        checked.add(WeatherProvider.LOCATION);
+        checked.add(WeatherProvider.LOCATION_UPSERT);
+
+        assertEquals(WeatherProvider.ROUTE_PATHS.length, WeatherProvider.ROUTE_CODES.length);
+        for (int i = 0; i < WeatherProvider.ROUTE_CODES.length; i++) {
+            assertTrue("Error: No plan check for the route " + WeatherProvider.ROUTE_PATHS[i],
+                    checked.contains(WeatherProvider.ROUTE_CODES[i]));
+        }
+    }
+
+    public void testWeatherWithLocationPlan() {
+        String sql = WeatherProvider.sWeatherByLocationSettingQueryBuilder.buildQuery(
+                null, WeatherProvider.sLocationSettingSelection, null, null, WEATHER_ORDER, null);
+        ArrayList<String> plan = explain(sql, TestUtilities.TEST_LOCATION);
+        assertNoFullScan(plan);
+        assertWeatherByLocation(plan);
+        assertNoSortStep(plan);
+    }
+
+    public void testWeatherWithLocationAndStartDatePlan() {
+        String sql = WeatherProvider.sWeatherByLocationSettingQueryBuilder.buildQuery(
+                null, WeatherProvider.sLocationSettingWithStartDateSelection, null, null,
+                WEATHER_ORDER, null);
+        ArrayList<String> plan = explain(sql, TestUtilities.TEST_LOCATION,
+                Long.toString(TestUtilities.TEST_DATE));
+        assertNoFullScan(plan);
+        assertWeatherByLocation(plan);
+        assertNoSortStep(plan);
+    }
+
+    public void testWeatherWithLocationAndDatePlan() {
+        String sql = WeatherProvider.sWeatherByLocationSettingQueryBuilder.buildQuery(
+                null, WeatherProvider.sLocationSettingAndDaySelection, null, null, null, null);
+        ArrayList<String> plan = explain(sql, TestUtilities.TEST_LOCATION,
+                Long.toString(TestUtilities.TEST_DATE));
+        assertNoFullScan(plan);
+        assertWeatherByLocation(plan);
+    }
+
+    /*
+        The plain weather route is used by the sync adapter to delete old days.
+     */
+    public void testWeatherByDatePlan() {
+        String sql = "SELECT * FROM " + WeatherEntry.TABLE_NAME +
+                " WHERE " + WeatherEntry.COLUMN_DATE + " <= ?";
+        assertNoFullScan(explain(sql, Long.toString(TestUtilities.TEST_DATE)));
+    }
+
+    /*
+        The location route is used by the sync adapter to find the row of a location setting.
+     */
+    public void testLocationPlan() {
+        String sql = "SELECT " + LocationEntry._ID + " FROM " + LocationEntry.TABLE_NAME +
+                " WHERE " + LocationEntry.COLUMN_LOCATION_SETTING + " = ?";
+        assertNoFullScan(explain(sql, TestUtilities.TEST_LOCATION));
+    }
+
+    /*
+        The upsert route looks the location setting up before writing.
+     */
+    public void testLocationUpsertPlan() {
+        assertNoFullScan(explain(WeatherProvider.SQL_LOCATION_ID_FOR_SETTING,
+                TestUtilities.TEST_LOCATION));
+    }
+
+    private ArrayList<String> explain(String sql, String... selectionArgs) {
+        Cursor cursor = mDb.rawQuery("EXPLAIN QUERY PLAN " + sql, selectionArgs);
+        ArrayList<String> plan = new ArrayList<String>();
+        try {
+            int detailIndex = cursor.getColumnIndex("detail");
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(detailIndex));
+            }
+        } finally {
+            cursor.close();
+        }
+        Log.v(LOG_TAG, sql + " -> " + plan);
+        assertFalse("Error: No query plan for " + sql, plan.isEmpty());
+        return plan;
+    }
+
+    private static void assertNoFullScan(ArrayList<String> plan) {
+        for (String step : plan) {
+            assertFalse("Error: The query reads a whole table: " + plan,
+                    FULL_SCAN.matcher(step).find());
+        }
+    }
+
+    private static void assertWeatherByLocation(ArrayList<String> plan) {
+        for (String step : plan) {
+            if (WEATHER_BY_LOCATION.matcher(step).find()) {
+                return;
+            }
+        }
+        fail("Error: Weather rows are not looked up by location: " + plan);
+    }
+
+    private static void assertNoSortStep(ArrayList<String> plan) {
+        for (String step : plan) {
+            assertFalse("Error: The rows are sorted after the fact: " + plan,
+                    step.contains("TEMP B-TREE"));
+        }
+    }
+}
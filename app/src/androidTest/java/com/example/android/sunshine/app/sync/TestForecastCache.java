@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.test.AndroidTestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+public class TestForecastCache extends AndroidTestCase {
+
+    private static final String LOCATION = "London, UK";
+    private static final byte[] BODY = "{\"cod\":\"200\",\"list\":[]}".getBytes();
+
+    private File mDirectory;
+    private ForecastCache mCache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDirectory = new File(mContext.getCacheDir(), "test_forecast");
+        deleteDirectory();
+        mCache = new ForecastCache(mDirectory);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteDirectory();
+        super.tearDown();
+    }
+
+    private void deleteDirectory() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    public void testRoundTrip() throws IOException {
+        assertNull(mCache.get(LOCATION));
+
+        put("\"abc\"", 1419033600000L, 2457012);
+
+        ForecastCache.Entry entry = mCache.get(LOCATION);
+        assertNotNull("Error: The entry wasn't kept", entry);
+        assertEquals("\"abc\"", entry.etag);
+        assertEquals(1419033600000L, entry.lastModified);
+        assertEquals(2457012, entry.parsedJulianDay);
+        assertTrue(entry.hasBodyHash(hash(BODY)));
+        assertFalse(entry.hasBodyHash(hash("{}".getBytes())));
+        assertTrue("Error: The body didn't survive compression",
+                Arrays.equals(BODY, readBody()));
+    }
+
+    /*
+        A body streamed through a writer is kept with the hash given at the end, and an
+        aborted writer leaves the old entry alone.
+     */
+    public void testStreamedPut() throws IOException {
+        ForecastCache.Writer writer = mCache.startPut(LOCATION, "\"v1\"", 0, 7);
+        writer.getBodyStream().write(BODY, 0, 10);
+        writer.getBodyStream().write(BODY, 10, BODY.length - 10);
+        writer.commit(hash(BODY));
+
+        writer = mCache.startPut(LOCATION, "\"v2\"", 0, 8);
+        writer.getBodyStream().write("{}".getBytes());
+        writer.abort();
+
+        ForecastCache.Entry entry = mCache.get(LOCATION);
+        assertEquals("\"v1\"", entry.etag);
+        assertEquals(7, entry.parsedJulianDay);
+        assertTrue(entry.hasBodyHash(hash(BODY)));
+        assertTrue(Arrays.equals(BODY, readBody()));
+        assertEquals("Error: The aborted entry left a file behind", 1,
+                mDirectory.listFiles().length);
+    }
+
+    /*
+        Caches BODY the way ForecastFetcher does, through a writer.
+     */
+    private void put(String etag, long lastModified, int parsedJulianDay) throws IOException {
+        ForecastCache.Writer writer = mCache.startPut(LOCATION, etag, lastModified,
+                parsedJulianDay);
+        assertNotNull("Error: The entry can't be written", writer);
+        writer.getBodyStream().write(BODY);
+        writer.commit(hash(BODY));
+    }
+
+    private static byte[] hash(byte[] body) {
+        return ForecastCache.newDigest().digest(body);
+    }
+
+    private byte[] readBody() throws IOException {
+        InputStream in = mCache.openBody(LOCATION);
+        assertNotNull("Error: No body was kept", in);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[256];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    public void testMissingValidators() throws IOException {
+        put(null, 0, 1);
+        ForecastCache.Entry entry = mCache.get(LOCATION);
+        assertNull(entry.etag);
+        assertEquals(0, entry.lastModified);
+    }
+
+    public void testCorruptEntryIsDropped() throws IOException {
+        put(null, 0, 1);
+        File[] files = mDirectory.listFiles();
+        assertEquals(1, files.length);
+
+        FileOutputStream out = new FileOutputStream(files[0]);
+        out.write(new byte[]{1, 2, 3});
+        out.close();
+
+        assertNull(mCache.get(LOCATION));
+        assertFalse("Error: The corrupt entry was kept", files[0].exists());
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.SyncResult;
+import android.database.ContentObserver;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.BuildConfig;
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.NotificationCoalescer;
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.data.WeatherDbHelper;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+    Drives whole syncs, fetch to change notification, and reports their latency and throughput.
+    It only runs against a local server, never the real API: start the replay server of the
+    benchmarks module and build with its address, e.g.
+
+        ./gradlew :benchmarks:replayServer -PreplayLatencyMs=100
+        ./gradlew :app:connectedAndroidTest \
+                -PforecastBaseUrl=http://10.0.2.2:8080/data/2.5/forecast/daily?
+ */
+public class TestSyncEndToEnd extends AndroidTestCase {
+    private static final String LOG_TAG = TestSyncEndToEnd.class.getSimpleName();
+
+    private static final int WARMUP_SYNCS = 5;
+    private static final int MEASURED_SYNCS = 50;
+
+    private boolean isLocalServer() {
+        return !BuildConfig.FORECAST_BASE_URL.contains("openweathermap.org");
+    }
+
+    public void testSyncLatency() throws InterruptedException {
+        if (!isLocalServer()) {
+            Log.i(LOG_TAG, "Skipped, build with -PforecastBaseUrl to run against a replay server");
+            return;
+        }
+
+        SunshineSyncAdapter adapter = new SunshineSyncAdapter(mContext, false,
+                BuildConfig.FORECAST_BASE_URL);
+        List<String> locations = Utility.getSyncLocations(mContext);
+        ForecastCache cache = new ForecastCache(mContext);
+        WeatherDbHelper dbHelper = new WeatherDbHelper(mContext);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        HandlerThread observerThread = new HandlerThread("SyncObserver");
+        observerThread.start();
+        final AtomicInteger changes = new AtomicInteger();
+        ContentObserver observer = new ContentObserver(new Handler(observerThread.getLooper())) {
+            @Override
+            public void onChange(boolean selfChange) {
+                changes.incrementAndGet();
+            }
+
+            @Override
+            public void onChange(boolean selfChange, Uri uri) {
+                onChange(selfChange);
+            }
+        };
+        mContext.getContentResolver().registerContentObserver(
+                WeatherContract.WeatherEntry.CONTENT_URI, true, observer);
+
+        long[] latencies = new long[MEASURED_SYNCS];
+        long elapsed = 0;
+        int storedSyncs = 0;
+        try {
+            for (int i = -WARMUP_SYNCS; i < MEASURED_SYNCS; i++) {
+                // without its cached copy every sync parses the whole forecast
+                for (String location : locations) {
+                    cache.remove(location);
+                }
+                // The server replays the same payload, whose rows the provider would find
+                // unchanged and skip.  Without them every sync writes and notifies again.
+                // Cleared straight in the database, so the observer doesn't count it.
+                db.delete(WeatherContract.WeatherEntry.TABLE_NAME, null, null);
+                long syncStart = System.nanoTime();
+                adapter.onPerformSync(null, new Bundle(), WeatherContract.CONTENT_AUTHORITY,
+                        null, new SyncResult());
+                if (i >= 0) {
+                    // the throughput leaves out the resetting above too
+                    latencies[i] = System.nanoTime() - syncStart;
+                    elapsed += latencies[i];
+                }
+                if (Utility.getLocationStatus(mContext) == SunshineSyncAdapter.LOCATION_STATUS_OK) {
+                    storedSyncs++;
+                }
+                // sends this sync's notifications now instead of merging them with the next one's
+                NotificationCoalescer.getInstance(mContext).flush();
+            }
+
+            // let the last notifications reach the observer thread
+            Thread.sleep(500);
+        } finally {
+            mContext.getContentResolver().unregisterContentObserver(observer);
+            observerThread.quit();
+            dbHelper.close();
+        }
+        // with an error rate some syncs fail, but not all of them
+        assertTrue("Error: No sync stored a forecast", storedSyncs > 0);
+        // every sync that stored the preferred location's forecast rewrote its rows
+        assertTrue("Error: " + storedSyncs + " syncs stored a forecast but only " +
+                changes.get() + " notified", changes.get() >= storedSyncs);
+
+        Arrays.sort(latencies);
+        Log.i(LOG_TAG, String.format("%d syncs of %d locations: %.1f syncs/s, " +
+                        "latency p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, max %.1f ms, %d notifications",
+                MEASURED_SYNCS, locations.size(), MEASURED_SYNCS * 1e9 / elapsed,
+                percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+                latencies[latencies.length - 1] / 1e6, changes.get()));
+    }
+
+    // in milliseconds, of sorted nanosecond values
+    private static double percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
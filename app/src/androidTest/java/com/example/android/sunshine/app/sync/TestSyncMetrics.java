@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.test.AndroidTestCase;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+public class TestSyncMetrics extends AndroidTestCase {
+
+    private static final long MILLI = 1000 * 1000;
+
+    private SyncMetrics mMetrics;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mMetrics = new SyncMetrics();
+    }
+
+    public void testPercentiles() {
+        assertEquals(0, mMetrics.getPercentileNanos(SyncMetrics.STAGE_PARSE, 50));
+
+        // 90 fast spans and 10 slow ones
+        for (int i = 0; i < 90; i++) {
+            mMetrics.record(SyncMetrics.STAGE_PARSE, 2 * MILLI, i);
+        }
+        for (int i = 0; i < 10; i++) {
+            mMetrics.record(SyncMetrics.STAGE_PARSE, 300 * MILLI, 90 + i);
+        }
+
+        assertEquals(100, mMetrics.getCount(SyncMetrics.STAGE_PARSE));
+        assertEquals(0, mMetrics.getCount(SyncMetrics.STAGE_CONNECT));
+
+        // bounded by the bucket, never more than twice the real value
+        long p50 = mMetrics.getPercentileNanos(SyncMetrics.STAGE_PARSE, 50);
+        assertTrue("Error: p50 was " + p50, p50 >= 2 * MILLI && p50 <= 4 * MILLI);
+        long p90 = mMetrics.getPercentileNanos(SyncMetrics.STAGE_PARSE, 90);
+        assertTrue("Error: p90 was " + p90, p90 >= 2 * MILLI && p90 <= 4 * MILLI);
+        assertEquals(300 * MILLI, mMetrics.getPercentileNanos(SyncMetrics.STAGE_PARSE, 99));
+    }
+
+    public void testSpan() {
+        long start = mMetrics.begin(SyncMetrics.STAGE_STORE);
+        mMetrics.end(SyncMetrics.STAGE_STORE, start);
+        assertEquals(1, mMetrics.getCount(SyncMetrics.STAGE_STORE));
+    }
+
+    public void testDumpKeepsLastSpans() {
+        for (int i = 0; i < SyncMetrics.RING_SIZE + 10; i++) {
+            mMetrics.record(SyncMetrics.STAGE_DOWNLOAD, MILLI, 1000 + i);
+        }
+        mMetrics.add(SyncMetrics.COUNTER_WIRE_BYTES, 1234);
+        mMetrics.add(SyncMetrics.COUNTER_WIRE_BYTES, 1000);
+        assertEquals(2234, mMetrics.getCounter(SyncMetrics.COUNTER_WIRE_BYTES));
+
+        String dump = dump();
+        assertTrue(dump, dump.contains("wire bytes: 2234"));
+        assertTrue(dump, dump.contains("download: " + (SyncMetrics.RING_SIZE + 10)));
+        assertTrue(dump, dump.contains("Last " + SyncMetrics.RING_SIZE + " spans"));
+        // the oldest spans were overwritten, the newest is there
+        assertFalse(dump, dump.contains("  1009 download"));
+        assertTrue(dump, dump.contains("  1010 download"));
+        assertTrue(dump, dump.contains("  " + (1000 + SyncMetrics.RING_SIZE + 9) + " download"));
+
+        mMetrics.reset();
+        assertEquals(0, mMetrics.getCounter(SyncMetrics.COUNTER_WIRE_BYTES));
+        assertEquals(0, mMetrics.getCount(SyncMetrics.STAGE_DOWNLOAD));
+        assertTrue(dump().contains("Last 0 spans"));
+    }
+
+    private String dump() {
+        StringWriter out = new StringWriter();
+        PrintWriter writer = new PrintWriter(out);
+        mMetrics.dump(writer);
+        writer.flush();
+        return out.toString();
+    }
+}
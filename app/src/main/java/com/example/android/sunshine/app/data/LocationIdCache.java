@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded map from location setting to the row ID of its location, least recently used first
+ * to go.  An entry is only a hint: whoever reads one checks it against the row before trusting
+ * it, so an entry left behind by a rolled back transaction does no harm.
+ */
+class LocationIdCache {
+
+    // A user follows one location, a few more at most
+    static final int MAX_ENTRIES = 16;
+
+    private final LinkedHashMap<String, Long> mIds =
+            new LinkedHashMap<String, Long>(MAX_ENTRIES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+
+    /**
+     * @return the row ID of the location setting, or -1 if it isn't cached
+     */
+    synchronized long get(String locationSetting) {
+        Long id = mIds.get(locationSetting);
+        return id == null ? -1 : id;
+    }
+
+    synchronized void put(String locationSetting, long id) {
+        mIds.put(locationSetting, id);
+    }
+
+    synchronized void remove(String locationSetting) {
+        mIds.remove(locationSetting);
+    }
+
+    /**
+     * Forgets everything, for when location rows were deleted or rewritten.
+     */
+    synchronized void clear() {
+        mIds.clear();
+    }
+
+    synchronized int size() {
+        return mIds.size();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Sends content change notifications in batches.
+ * <p/>
+ * Every notification makes each {@link android.content.CursorLoader} watching the URI run its
+ * query again, so a burst of writes used to mean a burst of re-queries.  Here a change only
+ * starts a window of {@link #WINDOW_MS}; everything that changes within it goes out together at
+ * the end, each URI once, and a URI is left out when one of its ancestors is going out anyway
+ * since observers of descendants hear about that too.  Each observer re-queries at most once
+ * per window.
+ */
+public class NotificationCoalescer {
+
+    // Long enough to take in the writes of one sync, short enough not to be seen
+    static final long WINDOW_MS = 100;
+
+    private static NotificationCoalescer sInstance;
+
+    private final ContentResolver mResolver;
+    private final Handler mHandler;
+    private final LinkedHashSet<Uri> mPending = new LinkedHashSet<Uri>();
+    private boolean mScheduled;
+
+    private final Runnable mFlush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    public static synchronized NotificationCoalescer getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new NotificationCoalescer(context.getContentResolver(),
+                    Looper.getMainLooper());
+        }
+        return sInstance;
+    }
+
+    NotificationCoalescer(ContentResolver resolver, Looper looper) {
+        mResolver = resolver;
+        mHandler = new Handler(looper);
+    }
+
+    /**
+     * Tells the observers of the URI about a change once the current window closes.
+     */
+    public synchronized void notifyChange(Uri uri) {
+        mPending.add(uri);
+        if (!mScheduled) {
+            mScheduled = true;
+            mHandler.postAtTime(mFlush, SystemClock.uptimeMillis() + WINDOW_MS);
+        }
+    }
+
+    /**
+     * Sends whatever is pending right away.
+     */
+    public void flush() {
+        List<Uri> uris;
+        synchronized (this) {
+            mHandler.removeCallbacks(mFlush);
+            mScheduled = false;
+            uris = collapse(mPending);
+            mPending.clear();
+        }
+        // outside the lock, observers may be called back on this thread
+        for (Uri uri : uris) {
+            mResolver.notifyChange(uri, null);
+        }
+    }
+
+    /**
+     * The URIs without those another one of them already covers, in their original order.
+     */
+    static List<Uri> collapse(Iterable<Uri> uris) {
+        ArrayList<Uri> collapsed = new ArrayList<Uri>();
+        for (Uri uri : uris) {
+            if (isCovered(collapsed, uri)) {
+                continue;
+            }
+            Iterator<Uri> it = collapsed.iterator();
+            while (it.hasNext()) {
+                if (isAncestorOrSame(uri, it.next())) {
+                    it.remove();
+                }
+            }
+            collapsed.add(uri);
+        }
+        return collapsed;
+    }
+
+    private static boolean isCovered(List<Uri> uris, Uri uri) {
+        for (Uri other : uris) {
+            if (isAncestorOrSame(other, uri)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+        Whether observers of the descendant hear about a change of the ancestor.  Like the
+        ContentResolver, this only looks at the authority and the path.
+     */
+    private static boolean isAncestorOrSame(Uri ancestor, Uri descendant) {
+        if (!equals(ancestor.getAuthority(), descendant.getAuthority())) {
+            return false;
+        }
+        List<String> ancestorPath = ancestor.getPathSegments();
+        List<String> descendantPath = descendant.getPathSegments();
+        return ancestorPath.size() <= descendantPath.size() &&
+                ancestorPath.equals(descendantPath.subList(0, ancestorPath.size()));
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
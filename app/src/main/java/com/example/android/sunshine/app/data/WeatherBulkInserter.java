@@ -0,0 +1,375 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+import android.text.format.Time;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/**
+ * Writes weather rows by diffing them against the stored ones, through compiled statements
+ * bound by position.
+ * <p/>
+ * A row is matched with the stored row of the same location and day.  A stored row with the
+ * same values is left alone, one with other values is updated in place so it keeps its _ID,
+ * and only a day that isn't stored yet is inserted.  A sync that brings one new day then
+ * writes one row instead of fourteen, and the days that changed are reported so only their
+ * observers need telling.  Every date is normalized with one reused {@link Time}.  Each row is
+ * read out of its ContentValues once into primitives, which are bound by column type without
+ * boxing.  Rows with columns the statements don't know take the regular path.
+ * <p/>
+ * Use it inside a transaction, and call {@link #finish} before that ends.
+ */
+class WeatherBulkInserter {
+    private static final String LOG_TAG = WeatherBulkInserter.class.getSimpleName();
+
+    // The columns the statements bind, in order; the first two are the key of a day
+    private static final String[] COLUMNS = {
+            WeatherEntry.COLUMN_LOC_KEY,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES
+    };
+    private static final int KEY_COLUMNS = 2;
+    private static final int INDEX_LOC_KEY = 0;
+    private static final int INDEX_DATE = 1;
+
+    // How each of COLUMNS is read and bound
+    private static final int TYPE_LONG = 0;
+    private static final int TYPE_DOUBLE = 1;
+    private static final int TYPE_TEXT = 2;
+    private static final int[] COLUMN_TYPES = {
+            TYPE_LONG,
+            TYPE_LONG,
+            TYPE_TEXT,
+            TYPE_LONG,
+            TYPE_DOUBLE,
+            TYPE_DOUBLE,
+            TYPE_DOUBLE,
+            TYPE_DOUBLE,
+            TYPE_DOUBLE,
+            TYPE_DOUBLE
+    };
+
+    private static final String SQL_INSERT = buildInsert();
+
+    //SELECT _id FROM weather WHERE location_id = ? AND date = ?
+    private static final String SQL_FIND = "SELECT " + WeatherEntry._ID +
+            " FROM " + WeatherEntry.TABLE_NAME + buildWhere(KEY_COLUMNS);
+
+    //SELECT _id FROM weather WHERE location_id = ? AND date = ? AND short_desc IS ? AND ...
+    private static final String SQL_FIND_SAME = "SELECT " + WeatherEntry._ID +
+            " FROM " + WeatherEntry.TABLE_NAME + buildWhere(COLUMNS.length);
+
+    //UPDATE weather SET short_desc = ?, ... WHERE _id = ?
+    private static final String SQL_UPDATE = buildUpdate();
+
+    private final SQLiteDatabase mDb;
+    private final Time mTime = new Time();
+    private SQLiteStatement mInsert;
+    private SQLiteStatement mFind;
+    private SQLiteStatement mFindSame;
+    private SQLiteStatement mUpdate;
+
+    // The row being stored, by column: the value of its type, or whether it is NULL
+    private final long[] mLongs = new long[COLUMNS.length];
+    private final double[] mDoubles = new double[COLUMNS.length];
+    private final String[] mTexts = new String[COLUMNS.length];
+    private final boolean[] mNulls = new boolean[COLUMNS.length];
+
+    // The days that were inserted or updated, as pairs of location ID and date
+    private long[] mChanged = new long[32];
+    private int mChangedCount;
+
+    /**
+     * Rows added, rows updated in place and rows that were already stored as given.
+     */
+    int inserted;
+    int updated;
+    int unchanged;
+
+    WeatherBulkInserter(SQLiteDatabase db) {
+        mDb = db;
+    }
+
+    private static String buildInsert() {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(WeatherEntry.TABLE_NAME)
+                .append(" (");
+        for (int i = 0; i < COLUMNS.length; i++) {
+            sql.append(i == 0 ? "" : ",").append(COLUMNS[i]);
+        }
+        sql.append(") VALUES (");
+        for (int i = 0; i < COLUMNS.length; i++) {
+            sql.append(i == 0 ? "?" : ",?");
+        }
+        return sql.append(')').toString();
+    }
+
+    private static String buildWhere(int columns) {
+        StringBuilder sql = new StringBuilder(" WHERE ");
+        for (int i = 0; i < columns; i++) {
+            // IS, since a NULL has to match a NULL
+            sql.append(i == 0 ? "" : " AND ").append(COLUMNS[i])
+                    .append(i < KEY_COLUMNS ? " = ?" : " IS ?");
+        }
+        return sql.toString();
+    }
+
+    private static String buildUpdate() {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(WeatherEntry.TABLE_NAME)
+                .append(" SET ");
+        for (int i = KEY_COLUMNS; i < COLUMNS.length; i++) {
+            sql.append(i == KEY_COLUMNS ? "" : ", ").append(COLUMNS[i]).append(" = ?");
+        }
+        return sql.append(" WHERE ").append(WeatherEntry._ID).append(" = ?").toString();
+    }
+
+    /**
+     * Writes the rows, see {@link #insert(ContentValues)}.
+     *
+     * @return the number of rows now stored as given, new, updated or unchanged
+     */
+    int insert(ContentValues[] values) {
+        int stored = 0;
+        for (ContentValues value : values) {
+            if (insert(value) != -1) {
+                stored++;
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Stores the row: inserts it, updates the row of the same location and day, or leaves that
+     * row alone if it already has these values.  The date is normalized like
+     * {@link WeatherContract#normalizeDate}.
+     *
+     * @return the row ID of the stored row, or -1 if the row broke a constraint
+     */
+    long insert(ContentValues value) {
+        int known = 0;
+        for (String column : COLUMNS) {
+            if (value.containsKey(column)) {
+                known++;
+            }
+        }
+        if (known != value.size() || !read(value)
+                || mNulls[INDEX_LOC_KEY] || mNulls[INDEX_DATE]) {
+            // columns the statements don't cover, e.g. an _id, values that aren't of the
+            // column's type, or no key to diff by
+            WeatherProvider.normalizeDate(value);
+            long rowId = mDb.insert(WeatherEntry.TABLE_NAME, null, value);
+            if (rowId != -1) {
+                inserted++;
+                Long locationId = value.getAsLong(WeatherEntry.COLUMN_LOC_KEY);
+                Long date = value.getAsLong(WeatherEntry.COLUMN_DATE);
+                if (locationId != null && date != null) {
+                    addChanged(locationId, date);
+                }
+            }
+            return rowId;
+        }
+
+        normalizeDate(value);
+        try {
+            if (mFindSame == null) {
+                mFindSame = mDb.compileStatement(SQL_FIND_SAME);
+                mFind = mDb.compileStatement(SQL_FIND);
+            }
+            bind(mFindSame, 0, COLUMNS.length);
+            long rowId = queryRowId(mFindSame);
+            if (rowId != -1) {
+                unchanged++;
+                return rowId;
+            }
+
+            bind(mFind, 0, KEY_COLUMNS);
+            rowId = queryRowId(mFind);
+            if (rowId != -1) {
+                if (mUpdate == null) {
+                    mUpdate = mDb.compileStatement(SQL_UPDATE);
+                }
+                bind(mUpdate, KEY_COLUMNS, COLUMNS.length);
+                mUpdate.bindLong(COLUMNS.length - KEY_COLUMNS + 1, rowId);
+                mUpdate.execute();
+                updated++;
+            } else {
+                if (mInsert == null) {
+                    mInsert = mDb.compileStatement(SQL_INSERT);
+                }
+                bind(mInsert, 0, COLUMNS.length);
+                rowId = mInsert.executeInsert();
+                inserted++;
+            }
+            addChanged(mLongs[INDEX_LOC_KEY], mLongs[INDEX_DATE]);
+            return rowId;
+        } catch (SQLException e) {
+            // like SQLiteDatabase.insert, a row that breaks a constraint is skipped
+            Log.e(LOG_TAG, "Error inserting " + value, e);
+            return -1;
+        }
+    }
+
+    /**
+     * The number of days that were inserted or updated.
+     */
+    int getChangedCount() {
+        return mChangedCount;
+    }
+
+    long getChangedLocationId(int index) {
+        return mChanged[index * 2];
+    }
+
+    long getChangedDate(int index) {
+        return mChanged[index * 2 + 1];
+    }
+
+    /**
+     * Releases the statements.
+     */
+    void finish() {
+        close();
+    }
+
+    /**
+     * Releases the statements, after a failure too.
+     */
+    void close() {
+        mInsert = close(mInsert);
+        mFind = close(mFind);
+        mFindSame = close(mFindSame);
+        mUpdate = close(mUpdate);
+    }
+
+    private static SQLiteStatement close(SQLiteStatement statement) {
+        if (statement != null) {
+            statement.close();
+        }
+        return null;
+    }
+
+    /*
+        Reads the row into mLongs, mDoubles, mTexts and mNulls.  Returns false if a value can't
+        be read as the type of its column.
+     */
+    private boolean read(ContentValues value) {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            Object object = value.get(COLUMNS[i]);
+            mNulls[i] = object == null;
+            if (object == null) {
+                continue;
+            }
+            switch (COLUMN_TYPES[i]) {
+                case TYPE_LONG:
+                    if (object instanceof Number) {
+                        mLongs[i] = ((Number) object).longValue();
+                    } else {
+                        try {
+                            mLongs[i] = Long.parseLong(object.toString());
+                        } catch (NumberFormatException e) {
+                            return false;
+                        }
+                    }
+                    break;
+                case TYPE_DOUBLE:
+                    if (object instanceof Number) {
+                        mDoubles[i] = ((Number) object).doubleValue();
+                    } else {
+                        try {
+                            mDoubles[i] = Double.parseDouble(object.toString());
+                        } catch (NumberFormatException e) {
+                            return false;
+                        }
+                    }
+                    break;
+                default:
+                    mTexts[i] = object.toString();
+                    break;
+            }
+        }
+        return true;
+    }
+
+    /*
+        Binds columns [from, to) of the row read last to the statement, from index 1.
+     */
+    private void bind(SQLiteStatement statement, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int index = i - from + 1;
+            if (mNulls[i]) {
+                statement.bindNull(index);
+                continue;
+            }
+            switch (COLUMN_TYPES[i]) {
+                case TYPE_LONG:
+                    statement.bindLong(index, mLongs[i]);
+                    break;
+                case TYPE_DOUBLE:
+                    statement.bindDouble(index, mDoubles[i]);
+                    break;
+                default:
+                    statement.bindString(index, mTexts[i]);
+                    break;
+            }
+        }
+    }
+
+    private static long queryRowId(SQLiteStatement statement) {
+        try {
+            return statement.simpleQueryForLong();
+        } catch (SQLiteDoneException e) {
+            // no row
+            return -1;
+        }
+    }
+
+    private void normalizeDate(ContentValues value) {
+        // same as WeatherContract.normalizeDate, without a Time per call
+        long dateValue = mLongs[INDEX_DATE];
+        mTime.set(dateValue);
+        int julianDay = Time.getJulianDay(dateValue, mTime.gmtoff);
+        long normalized = mTime.setJulianDay(julianDay);
+        if (normalized != dateValue) {
+            mLongs[INDEX_DATE] = normalized;
+            // callers read the stored date back from their values, keep them in sync
+            value.put(WeatherEntry.COLUMN_DATE, normalized);
+        }
+    }
+
+    private void addChanged(long locationId, long date) {
+        if (mChangedCount * 2 == mChanged.length) {
+            long[] grown = new long[mChanged.length * 2];
+            System.arraycopy(mChanged, 0, grown, 0, mChanged.length);
+            mChanged = grown;
+        }
+        mChanged[mChangedCount * 2] = locationId;
+        mChanged[mChangedCount * 2 + 1] = date;
+        mChangedCount++;
+    }
+}
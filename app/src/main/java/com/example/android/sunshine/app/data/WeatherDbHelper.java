@@ -15,25 +15,99 @@
  */
 package com.example.android.sunshine.app.data;
 
+import android.annotation.TargetApi;
 import android.content.Context;
+import android.content.res.Resources;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 
+import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
 import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 
 /**
  * Manages a local database for weather data.
+ * <p/>
+ * The database is opened with write-ahead logging where available, so the loaders' queries
+ * don't wait for a sync's transaction to finish.  The cache size and synchronous mode come from
+ * res/values/database.xml.
  */
 public class WeatherDbHelper extends SQLiteOpenHelper {
 
-    // If you change the database schema, you must increment the database version.
-    private static final int DATABASE_VERSION = 2;
+    // If you change the database schema, you must increment the database version and add a
+    // migration to WeatherDbMigrations.
+    static final int DATABASE_VERSION = 3;
 
     static final String DATABASE_NAME = "weather.db";
 
+    // Serves the provider's per location queries, which look rows up by location and then range
+    // over the date.  The UNIQUE (date, location_id) constraint's index has the columns the
+    // other way around, so it can't.
+    static final String INDEX_WEATHER_LOCATION_DATE = "weather_location_date_idx";
+
+    static final String SQL_CREATE_WEATHER_LOCATION_DATE_INDEX =
+            "CREATE INDEX IF NOT EXISTS " + INDEX_WEATHER_LOCATION_DATE + " ON " +
+                    WeatherEntry.TABLE_NAME + " (" +
+                    WeatherEntry.COLUMN_LOC_KEY + ", " + WeatherEntry.COLUMN_DATE + ");";
+
+    private final boolean mWriteAheadLogging;
+    private final int mCacheSizeKb;
+    private final int mSynchronous;
+
     public WeatherDbHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+
+        Resources resources = context.getResources();
+        mWriteAheadLogging = resources.getBoolean(R.bool.db_write_ahead_logging)
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB;
+        mCacheSizeKb = resources.getInteger(R.integer.db_cache_size_kb);
+        mSynchronous = resources.getInteger(R.integer.db_synchronous);
+
+        if (mWriteAheadLogging && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            // Opens every connection in WAL mode up front, so the framework has already applied
+            // its own WAL synchronous mode by the time onConfigure sets ours
+            setWriteAheadLoggingEnabled(true);
+        }
+    }
+
+    boolean isWriteAheadLogging() {
+        return mWriteAheadLogging;
+    }
+
+    @Override
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        configure(db);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            // No configure hook before Jelly Bean, so this is the earliest we can get at it
+            if (mWriteAheadLogging && !db.isReadOnly()) {
+                enableWriteAheadLogging(db);
+            }
+            configure(db);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static void enableWriteAheadLogging(SQLiteDatabase db) {
+        // Also gives the database a pool of connections, so reads run next to a write
+        db.enableWriteAheadLogging();
+    }
+
+    // Runs on the primary connection once the journal mode is settled, since switching to WAL
+    // resets synchronous to the framework's default.  That connection does all the writing, so
+    // it is the one synchronous matters for.  The framework opens the pooled read connections
+    // itself without a hook, so they keep SQLite's default cache size.
+    private void configure(SQLiteDatabase db) {
+        // a negative size is in KiB rather than in pages
+        db.execSQL("PRAGMA cache_size = " + -mCacheSizeKb);
+        db.execSQL("PRAGMA synchronous = " + mSynchronous);
     }
 
     @Override
@@ -81,16 +155,21 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
 
         sqLiteDatabase.execSQL(SQL_CREATE_LOCATION_TABLE);
         sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_TABLE);
+        sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_LOCATION_DATE_INDEX);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
-        // This database is only a cache for online data, so its upgrade policy is
-        // to simply to discard the data and start over
+        // Move the cached forecast along, so an upgrade doesn't cost a cold sync.
         // Note that this only fires if you change the version number for your database.
         // It does NOT depend on the version number for your application.
-        // If you want to update the schema without wiping data, commenting out the next 2 lines
-        // should be your top priority before modifying this method.
+        if (WeatherDbMigrations.canMigrate(oldVersion, newVersion)) {
+            WeatherDbMigrations.migrate(sqLiteDatabase, oldVersion, newVersion);
+            return;
+        }
+
+        // This database is only a cache for online data, so for versions too old to migrate the
+        // policy is to simply discard the data and start over
         sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + LocationEntry.TABLE_NAME);
         sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
         onCreate(sqLiteDatabase);
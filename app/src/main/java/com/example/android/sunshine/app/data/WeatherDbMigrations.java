@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/**
+ * Upgrades the weather database one version at a time, keeping the cached forecast.
+ * <p/>
+ * To change the schema, change {@link WeatherDbHelper#onCreate} for new installs, add a
+ * {@link Migration} at the end of {@link #MIGRATIONS} that brings the previous version to the
+ * same schema, and bump {@link WeatherDbHelper#DATABASE_VERSION}.  Migrations spell out their
+ * SQL instead of reusing the helper's, since those statements describe the latest schema and
+ * move on.  TestDbMigrations keeps a copy of every old schema to check each step.
+ */
+class WeatherDbMigrations {
+
+    /**
+     * Oldest version we can migrate from.  Anything older is dropped and created again.
+     */
+    static final int OLDEST_MIGRATABLE_VERSION = 2;
+
+    interface Migration {
+        void migrate(SQLiteDatabase db);
+    }
+
+    // MIGRATIONS[i] upgrades OLDEST_MIGRATABLE_VERSION + i to the version after it
+    private static final Migration[] MIGRATIONS = {
+            // 2 -> 3: index for the per location queries
+            new Migration() {
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    db.execSQL("CREATE INDEX IF NOT EXISTS weather_location_date_idx ON " +
+                            WeatherEntry.TABLE_NAME + " (" + WeatherEntry.COLUMN_LOC_KEY + ", " +
+                            WeatherEntry.COLUMN_DATE + ");");
+                }
+            },
+    };
+
+    private WeatherDbMigrations() {
+    }
+
+    /**
+     * The version the migrations end at, which must be the helper's current version.
+     */
+    static int getLatestVersion() {
+        return OLDEST_MIGRATABLE_VERSION + MIGRATIONS.length;
+    }
+
+    static boolean canMigrate(int oldVersion, int newVersion) {
+        return oldVersion >= OLDEST_MIGRATABLE_VERSION && oldVersion <= newVersion
+                && newVersion <= getLatestVersion();
+    }
+
+    /**
+     * Runs every migration from {@code oldVersion} to {@code newVersion}.  The caller owns the
+     * transaction; {@link android.database.sqlite.SQLiteOpenHelper} runs upgrades inside one,
+     * so a failing step leaves the database at {@code oldVersion}.
+     */
+    static void migrate(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (!canMigrate(oldVersion, newVersion)) {
+            throw new IllegalArgumentException(
+                    "Can't migrate from version " + oldVersion + " to " + newVersion);
+        }
+        for (int version = oldVersion; version < newVersion; version++) {
+            MIGRATIONS[version - OLDEST_MIGRATABLE_VERSION].migrate(db);
+        }
+    }
+}
@@ -17,14 +17,24 @@ package com.example.android.sunshine.app.data;
 
 import android.annotation.TargetApi;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 
 public class WeatherProvider extends ContentProvider {
+    private static final String LOG_TAG = WeatherProvider.class.getSimpleName();
 
     // The URI Matcher used by this content provider.
     private static final UriMatcher sUriMatcher = buildUriMatcher();
@@ -34,8 +44,25 @@ public class WeatherProvider extends ContentProvider {
     static final int WEATHER_WITH_LOCATION = 101;
     static final int WEATHER_WITH_LOCATION_AND_DATE = 102;
     static final int LOCATION = 300;
-
-    private static final SQLiteQueryBuilder sWeatherByLocationSettingQueryBuilder;
+    static final int LOCATION_UPSERT = 301;
+
+    // Every route of sUriMatcher, the path under the authority and its code
+    static final String[] ROUTE_PATHS = {
+            WeatherContract.PATH_WEATHER,
+            WeatherContract.PATH_WEATHER + "/*",
+            WeatherContract.PATH_WEATHER + "/*/#",
+            WeatherContract.PATH_LOCATION,
+            WeatherContract.PATH_LOCATION + "/" + WeatherContract.PATH_UPSERT
+    };
+    static final int[] ROUTE_CODES = {
+            WEATHER,
+            WEATHER_WITH_LOCATION,
+            WEATHER_WITH_LOCATION_AND_DATE,
+            LOCATION,
+            LOCATION_UPSERT
+    };
+
+    static final SQLiteQueryBuilder sWeatherByLocationSettingQueryBuilder;
 
     static{
         sWeatherByLocationSettingQueryBuilder = new SQLiteQueryBuilder();
@@ -52,22 +79,66 @@ public class WeatherProvider extends ContentProvider {
     }
 
     //location.location_setting = ?
-    private static final String sLocationSettingSelection =
+    static final String sLocationSettingSelection =
             WeatherContract.LocationEntry.TABLE_NAME+
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? ";
 
     //location.location_setting = ? AND date >= ?
-    private static final String sLocationSettingWithStartDateSelection =
+    static final String sLocationSettingWithStartDateSelection =
             WeatherContract.LocationEntry.TABLE_NAME+
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
                     WeatherContract.WeatherEntry.COLUMN_DATE + " >= ? ";
 
     //location.location_setting = ? AND date = ?
-    private static final String sLocationSettingAndDaySelection =
+    static final String sLocationSettingAndDaySelection =
             WeatherContract.LocationEntry.TABLE_NAME +
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
                     WeatherContract.WeatherEntry.COLUMN_DATE + " = ? ";
 
+    //SELECT _id FROM location WHERE location_setting = ?
+    static final String SQL_LOCATION_ID_FOR_SETTING =
+            "SELECT " + WeatherContract.LocationEntry._ID +
+                    " FROM " + WeatherContract.LocationEntry.TABLE_NAME +
+                    " WHERE " + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?";
+
+    //SELECT location_setting FROM location WHERE _id = ?
+    static final String SQL_LOCATION_SETTING_FOR_ID =
+            "SELECT " + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING +
+                    " FROM " + WeatherContract.LocationEntry.TABLE_NAME +
+                    " WHERE " + WeatherContract.LocationEntry._ID + " = ?";
+
+    private NotificationCoalescer mNotifications;
+    private final LocationIdCache mLocationIds = new LocationIdCache();
+
+    /**
+     * What an {@link #applyBatch} running on a thread has put off until it commits.
+     */
+    private static class Batch {
+        // URIs to notify, each once
+        final LinkedHashSet<Uri> changedUris = new LinkedHashSet<Uri>();
+        // weather inserts share one compiled statement, created on the first one
+        WeatherBulkInserter weatherInserter;
+        int weatherInserted;
+        int weatherUpdated;
+        int weatherUnchanged;
+
+        /*
+            Closes the inserter, adds up its counts and queues the days it changed.
+         */
+        void finishWeatherInserts(WeatherProvider provider, SQLiteDatabase db) {
+            if (weatherInserter != null) {
+                weatherInserter.finish();
+                weatherInserted += weatherInserter.inserted;
+                weatherUpdated += weatherInserter.updated;
+                weatherUnchanged += weatherInserter.unchanged;
+                provider.notifyChangedLocations(db, weatherInserter);
+                weatherInserter = null;
+            }
+        }
+    }
+
+    private final ThreadLocal<Batch> mBatch = new ThreadLocal<Batch>();
+
     private Cursor getWeatherByLocationSetting(Uri uri, String[] projection, String sortOrder) {
         String locationSetting = WeatherContract.WeatherEntry.getLocationSettingFromUri(uri);
         long startDate = WeatherContract.WeatherEntry.getStartDateFromUri(uri);
@@ -124,12 +195,11 @@ public class WeatherProvider extends ContentProvider {
         final UriMatcher matcher = new UriMatcher(UriMatcher.NO_MATCH);
         final String authority = WeatherContract.CONTENT_AUTHORITY;
 
-        // For each type of URI you want to add, create a corresponding code.
-        matcher.addURI(authority, WeatherContract.PATH_WEATHER, WEATHER);
-        matcher.addURI(authority, WeatherContract.PATH_WEATHER + "/*", WEATHER_WITH_LOCATION);
-        matcher.addURI(authority, WeatherContract.PATH_WEATHER + "/*/#", WEATHER_WITH_LOCATION_AND_DATE);
-
-        matcher.addURI(authority, WeatherContract.PATH_LOCATION, LOCATION);
+        // For each type of URI you want to add, create a corresponding code.  They are listed
+        // in ROUTE_PATHS and ROUTE_CODES, so the tests can check that each one is covered.
+        for (int i = 0; i < ROUTE_PATHS.length; i++) {
+            matcher.addURI(authority, ROUTE_PATHS[i], ROUTE_CODES[i]);
+        }
         return matcher;
     }
 
@@ -140,6 +210,7 @@ public class WeatherProvider extends ContentProvider {
     @Override
     public boolean onCreate() {
         mOpenHelper = new WeatherDbHelper(getContext());
+        mNotifications = NotificationCoalescer.getInstance(getContext());
         return true;
     }
 
@@ -164,6 +235,8 @@ public class WeatherProvider extends ContentProvider {
                 return WeatherContract.WeatherEntry.CONTENT_TYPE;
             case LOCATION:
                 return WeatherContract.LocationEntry.CONTENT_TYPE;
+            case LOCATION_UPSERT:
+                return WeatherContract.LocationEntry.CONTENT_ITEM_TYPE;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
@@ -232,13 +305,28 @@ public class WeatherProvider extends ContentProvider {
 
         switch (match) {
             case WEATHER: {
-                normalizeDate(values);
-                long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, values);
+                long _id;
+                Batch batch = mBatch.get();
+                if (batch != null) {
+                    if (batch.weatherInserter == null) {
+                        batch.weatherInserter = new WeatherBulkInserter(db);
+                    }
+                    _id = batch.weatherInserter.insert(values);
+                } else {
+                    normalizeDate(values);
+                    _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, values);
+                }
                 if ( _id > 0 )
                     returnUri = WeatherContract.WeatherEntry.buildWeatherUri(_id);
                 else
                     throw new android.database.SQLException("Failed to insert row into " + uri);
-                break;
+                if (batch == null) {
+                    // a batch tells about all of its inserts at once
+                    Long locationId = values.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY);
+                    notifyWeatherChange(db,
+                            locationId == null ? new long[0] : new long[]{locationId});
+                }
+                return returnUri;
             }
             case LOCATION: {
                 long _id = db.insert(WeatherContract.LocationEntry.TABLE_NAME, null, values);
@@ -248,13 +336,88 @@ public class WeatherProvider extends ContentProvider {
                     throw new android.database.SQLException("Failed to insert row into " + uri);
                 break;
             }
+            case LOCATION_UPSERT: {
+                long _id = upsertLocation(db, values);
+                returnUri = WeatherContract.LocationEntry.buildLocationUri(_id);
+                // observers watch the location table, not the upsert route
+                uri = WeatherContract.LocationEntry.CONTENT_URI;
+                break;
+            }
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
-        getContext().getContentResolver().notifyChange(uri, null);
+        notifyChange(uri);
         return returnUri;
     }
 
+    /*
+        Updates the row with the location setting of the values, or inserts one, in one
+        transaction so two syncs can't both insert the same setting.  The row ID of a setting
+        is remembered, so syncing the same location again skips the lookup.
+     */
+    private long upsertLocation(SQLiteDatabase db, ContentValues values) {
+        String locationSetting =
+                values.getAsString(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING);
+        if (locationSetting == null) {
+            throw new IllegalArgumentException("Upsert needs a " +
+                    WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING);
+        }
+
+        db.beginTransaction();
+        try {
+            long _id = mLocationIds.get(locationSetting);
+            if (_id != -1 && !updateLocation(db, _id, locationSetting, values)) {
+                // the row is gone, or the ID was handed out again after a rollback
+                mLocationIds.remove(locationSetting);
+                _id = -1;
+            }
+            if (_id != -1) {
+                db.setTransactionSuccessful();
+                return _id;
+            }
+
+            _id = findLocationId(db, locationSetting);
+            if (_id == -1) {
+                _id = db.insert(WeatherContract.LocationEntry.TABLE_NAME, null, values);
+                if (_id <= 0) {
+                    throw new android.database.SQLException(
+                            "Failed to insert location " + locationSetting);
+                }
+            } else {
+                updateLocation(db, _id, locationSetting, values);
+            }
+            mLocationIds.put(locationSetting, _id);
+            db.setTransactionSuccessful();
+            return _id;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /*
+        Updates the location row, as long as it still has the location setting.
+     */
+    private static boolean updateLocation(SQLiteDatabase db, long _id, String locationSetting,
+                                          ContentValues values) {
+        return db.update(WeatherContract.LocationEntry.TABLE_NAME, values,
+                WeatherContract.LocationEntry._ID + " = ? AND " +
+                        WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                new String[]{Long.toString(_id), locationSetting}) == 1;
+    }
+
+    private static long findLocationId(SQLiteDatabase db, String locationSetting) {
+        SQLiteStatement statement = db.compileStatement(SQL_LOCATION_ID_FOR_SETTING);
+        try {
+            statement.bindString(1, locationSetting);
+            return statement.simpleQueryForLong();
+        } catch (SQLiteDoneException e) {
+            // no row
+            return -1;
+        } finally {
+            statement.close();
+        }
+    }
+
     @Override
     public int delete(Uri uri, String selection, String[] selectionArgs) {
         final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
@@ -263,25 +426,34 @@ public class WeatherProvider extends ContentProvider {
         // this makes delete all rows return the number of rows deleted
         if ( null == selection ) selection = "1";
         switch (match) {
-            case WEATHER:
+            case WEATHER: {
+                long[] locationIds = findWeatherLocations(db, selection, selectionArgs);
                 rowsDeleted = db.delete(
                         WeatherContract.WeatherEntry.TABLE_NAME, selection, selectionArgs);
-                break;
+                if (rowsDeleted != 0) {
+                    notifyWeatherChange(db, locationIds);
+                }
+                return rowsDeleted;
+            }
             case LOCATION:
                 rowsDeleted = db.delete(
                         WeatherContract.LocationEntry.TABLE_NAME, selection, selectionArgs);
+                if (rowsDeleted != 0) {
+                    // the selection could be anything, forget all of them
+                    mLocationIds.clear();
+                }
                 break;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
         // Because a null deletes all rows
         if (rowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
         return rowsDeleted;
     }
 
-    private void normalizeDate(ContentValues values) {
+    static void normalizeDate(ContentValues values) {
         // normalize the date value
         if (values.containsKey(WeatherContract.WeatherEntry.COLUMN_DATE)) {
             long dateValue = values.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
@@ -297,20 +469,34 @@ public class WeatherProvider extends ContentProvider {
         int rowsUpdated;
 
         switch (match) {
-            case WEATHER:
+            case WEATHER: {
                 normalizeDate(values);
+                // rows may move to another location, both have changed then
+                long[] locationIds = findWeatherLocations(db, selection, selectionArgs);
                 rowsUpdated = db.update(WeatherContract.WeatherEntry.TABLE_NAME, values, selection,
                         selectionArgs);
-                break;
+                if (rowsUpdated != 0) {
+                    notifyWeatherChange(db, locationIds);
+                    Long locationId = values.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY);
+                    if (locationId != null) {
+                        notifyWeatherChange(db, new long[]{locationId});
+                    }
+                }
+                return rowsUpdated;
+            }
             case LOCATION:
                 rowsUpdated = db.update(WeatherContract.LocationEntry.TABLE_NAME, values, selection,
                         selectionArgs);
+                if (rowsUpdated != 0 && values.containsKey(
+                        WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING)) {
+                    mLocationIds.clear();
+                }
                 break;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
         if (rowsUpdated != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
         return rowsUpdated;
     }
@@ -321,27 +507,157 @@ public class WeatherProvider extends ContentProvider {
         final int match = sUriMatcher.match(uri);
         switch (match) {
             case WEATHER:
+                WeatherBulkInserter inserter = new WeatherBulkInserter(db);
                 db.beginTransaction();
-                int returnCount = 0;
+                int returnCount;
                 try {
-                    for (ContentValues value : values) {
-                        normalizeDate(value);
-                        long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
-                        if (_id != -1) {
-                            returnCount++;
-                        }
-                    }
+                    returnCount = inserter.insert(values);
+                    inserter.finish();
                     db.setTransactionSuccessful();
                 } finally {
                     db.endTransaction();
                 }
-                getContext().getContentResolver().notifyChange(uri, null);
+                Log.v(LOG_TAG, "bulkInsert: " + inserter.inserted + " inserted, " +
+                        inserter.updated + " updated, " + inserter.unchanged + " unchanged");
+                notifyChangedLocations(db, inserter);
                 return returnCount;
             default:
                 return super.bulkInsert(uri, values);
         }
     }
 
+    /**
+     * Applies the operations in one transaction: either all of them are committed or, if one
+     * throws, none.  Observers are told once per changed URI after the commit instead of once
+     * per operation, and weather inserts go through one compiled statement.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        if (mBatch.get() != null) {
+            // nested in another batch on this thread, its transaction covers us
+            return super.applyBatch(operations);
+        }
+
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        Batch batch = new Batch();
+        mBatch.set(batch);
+        ContentProviderResult[] results;
+        db.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            batch.finishWeatherInserts(this, db);
+            db.setTransactionSuccessful();
+        } finally {
+            if (batch.weatherInserter != null) {
+                // an operation threw, nothing it changed is kept
+                batch.weatherInserter.close();
+            }
+            mBatch.remove();
+            db.endTransaction();
+        }
+
+        Log.v(LOG_TAG, "applyBatch: " + operations.size() + " operations, " +
+                batch.weatherInserted + " weather inserted, " +
+                batch.weatherUpdated + " updated, " + batch.weatherUnchanged + " unchanged");
+        for (Uri uri : batch.changedUris) {
+            notifyChange(uri);
+        }
+        return results;
+    }
+
+    /*
+        The locations of the weather rows a selection picks, looked up before they change.
+     */
+    private static long[] findWeatherLocations(SQLiteDatabase db, String selection,
+                                               String[] selectionArgs) {
+        Cursor cursor = db.query(true, WeatherContract.WeatherEntry.TABLE_NAME,
+                new String[]{WeatherContract.WeatherEntry.COLUMN_LOC_KEY},
+                selection, selectionArgs, null, null, null, null);
+        try {
+            long[] locationIds = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                locationIds[i] = cursor.getLong(0);
+            }
+            return locationIds;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /*
+        Loaders watch the weather of one location, so only those of the locations that changed
+        are told.  When a location can't be found everyone watching weather is.
+     */
+    private void notifyWeatherChange(SQLiteDatabase db, long[] locationIds) {
+        if (locationIds.length == 0) {
+            return;
+        }
+        SQLiteStatement statement = db.compileStatement(SQL_LOCATION_SETTING_FOR_ID);
+        try {
+            for (long locationId : locationIds) {
+                statement.bindLong(1, locationId);
+                Uri uri;
+                try {
+                    uri = WeatherContract.WeatherEntry.buildWeatherLocation(
+                            statement.simpleQueryForString());
+                } catch (SQLiteDoneException e) {
+                    uri = WeatherContract.WeatherEntry.CONTENT_URI;
+                }
+                notifyChange(uri);
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    /*
+        Only the locations whose rows the inserter wrote have changed, so only their loaders
+        are told, once each however many days changed.
+     */
+    private void notifyChangedLocations(SQLiteDatabase db, WeatherBulkInserter inserter) {
+        int count = inserter.getChangedCount();
+        if (count == 0) {
+            return;
+        }
+        SQLiteStatement statement = db.compileStatement(SQL_LOCATION_SETTING_FOR_ID);
+        try {
+            long lastLocationId = -1;
+            for (int i = 0; i < count; i++) {
+                long locationId = inserter.getChangedLocationId(i);
+                if (locationId == lastLocationId) {
+                    // rows come grouped by location
+                    continue;
+                }
+                lastLocationId = locationId;
+                statement.bindLong(1, locationId);
+                Uri uri;
+                try {
+                    uri = WeatherContract.WeatherEntry.buildWeatherLocation(
+                            statement.simpleQueryForString());
+                } catch (SQLiteDoneException e) {
+                    uri = WeatherContract.WeatherEntry.CONTENT_URI;
+                }
+                notifyChange(uri);
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    /*
+        Tells observers about the change, after the commit of the batch running on this thread
+        if there is one.  Changes close together go out as one, see NotificationCoalescer.
+     */
+    private void notifyChange(Uri uri) {
+        Batch batch = mBatch.get();
+        if (batch != null) {
+            batch.changedUris.add(uri);
+        } else {
+            mNotifications.notifyChange(uri);
+        }
+    }
+
     // You do not need to call this method. This is a method specifically to assist the testing
     // framework in running smoothly. You can read more at:
     // http://developer.android.com/reference/android/content/ContentProvider.html#shutdown()
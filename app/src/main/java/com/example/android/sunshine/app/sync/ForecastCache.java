@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The last forecast response of every location, kept on disk so a sync can tell whether
+ * anything changed.
+ * <p/>
+ * An entry holds the validators the server sent (ETag and Last-Modified) for conditional
+ * requests, a hash of the body to recognize a resent copy, the day the body was parsed on, and
+ * the body itself, gzipped.  Days in the response are relative to the day it is parsed on, so
+ * an unchanged response still has to be parsed again once a day; the copy saves downloading it.
+ * <p/>
+ * Bodies are never held in memory as a whole: a {@link Writer} stores one while it streams
+ * through the parser, and {@link #openBody} streams it back.
+ */
+class ForecastCache {
+    private static final String LOG_TAG = ForecastCache.class.getSimpleName();
+
+    private static final String DIRECTORY = "forecast";
+    private static final int FORMAT_VERSION = 1;
+    private static final String HASH_ALGORITHM = "SHA-1";
+    private static final int HASH_LENGTH = 20;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File mDirectory;
+
+    /**
+     * What is known about the last response for a location.
+     */
+    static class Entry {
+        final String etag;
+        // 0 if the server didn't send one
+        final long lastModified;
+        final byte[] bodyHash;
+        final int parsedJulianDay;
+
+        Entry(String etag, long lastModified, byte[] bodyHash, int parsedJulianDay) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.bodyHash = bodyHash;
+            this.parsedJulianDay = parsedJulianDay;
+        }
+
+        boolean hasBodyHash(byte[] hash) {
+            return Arrays.equals(bodyHash, hash);
+        }
+    }
+
+    /**
+     * Writes a new entry of a location while its body streams through {@link #getBodyStream}.
+     * The hash of the body is only known at its end, so its place in the file is filled in by
+     * {@link #commit}.  The old entry stays until then.
+     */
+    class Writer {
+        private final String mLocationSetting;
+        private final File mTemp;
+        private final DataOutputStream mOut;
+        private final GZIPOutputStream mBody;
+        private final long mHashOffset;
+
+        private Writer(String locationSetting, File temp, String etag, long lastModified,
+                       int parsedJulianDay) throws IOException {
+            mLocationSetting = locationSetting;
+            mTemp = temp;
+            mOut = new DataOutputStream(new FileOutputStream(temp));
+            try {
+                mOut.writeInt(FORMAT_VERSION);
+                mOut.writeUTF(etag != null ? etag : "");
+                mOut.writeLong(lastModified);
+                mOut.writeShort(HASH_LENGTH);
+                mHashOffset = mOut.size();
+                mOut.write(new byte[HASH_LENGTH]);
+                mOut.writeInt(parsedJulianDay);
+                mBody = new GZIPOutputStream(mOut);
+            } catch (IOException e) {
+                closeQuietly(mOut);
+                temp.delete();
+                throw e;
+            }
+        }
+
+        OutputStream getBodyStream() {
+            return mBody;
+        }
+
+        /**
+         * Completes the entry, replacing the old one.
+         */
+        void commit(byte[] bodyHash) {
+            try {
+                mBody.finish();
+                mOut.close();
+                RandomAccessFile file = new RandomAccessFile(mTemp, "rw");
+                try {
+                    file.seek(mHashOffset);
+                    file.write(bodyHash);
+                } finally {
+                    file.close();
+                }
+                if (!mTemp.renameTo(getFile(mLocationSetting))) {
+                    throw new IOException("Can't rename " + mTemp);
+                }
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "Error caching the forecast of " + mLocationSetting, e);
+                mTemp.delete();
+            }
+        }
+
+        /**
+         * Drops the new entry, the old one stays.
+         */
+        void abort() {
+            closeQuietly(mOut);
+            mTemp.delete();
+        }
+    }
+
+    ForecastCache(Context context) {
+        this(new File(context.getCacheDir(), DIRECTORY));
+    }
+
+    ForecastCache(File directory) {
+        mDirectory = directory;
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // every Android device has it
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the entry of the location, or null if there is none or it can't be read
+     */
+    Entry get(String locationSetting) {
+        File file = getFile(locationSetting);
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            return readEntry(in);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Dropping unreadable cache entry of " + locationSetting, e);
+            file.delete();
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * @return the body stored with the entry of the location, to be closed by the caller, or
+     * null if there is none
+     */
+    InputStream openBody(String locationSetting) {
+        File file = getFile(locationSetting);
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            readEntry(in);
+            return new GZIPInputStream(in);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Dropping unreadable cache entry of " + locationSetting, e);
+            closeQuietly(in);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Starts replacing the entry of the location, see {@link Writer}.
+     *
+     * @return null if the entry can't be written
+     */
+    Writer startPut(String locationSetting, String etag, long lastModified,
+                    int parsedJulianDay) {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            Log.w(LOG_TAG, "Can't create " + mDirectory);
+            return null;
+        }
+        File temp = new File(getFile(locationSetting).getPath() + ".tmp");
+        try {
+            return new Writer(locationSetting, temp, etag, lastModified, parsedJulianDay);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Error caching the forecast of " + locationSetting, e);
+            return null;
+        }
+    }
+
+    void remove(String locationSetting) {
+        getFile(locationSetting).delete();
+    }
+
+    private static Entry readEntry(DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Unknown cache format");
+        }
+        String etag = in.readUTF();
+        long lastModified = in.readLong();
+        byte[] bodyHash = new byte[in.readUnsignedShort()];
+        if (bodyHash.length != HASH_LENGTH) {
+            throw new IOException("Unexpected hash length " + bodyHash.length);
+        }
+        in.readFully(bodyHash);
+        int parsedJulianDay = in.readInt();
+        return new Entry(etag.length() > 0 ? etag : null, lastModified, bodyHash,
+                parsedJulianDay);
+    }
+
+    private File getFile(String locationSetting) {
+        // location settings can hold anything, name the file after their hash
+        byte[] hash = newDigest().digest(locationSetting.getBytes(UTF_8));
+        StringBuilder name = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            name.append(Character.forDigit((b >> 4) & 0xf, 16))
+                    .append(Character.forDigit(b & 0xf, 16));
+        }
+        return new File(mDirectory, name.toString());
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // nothing left to do with it
+            }
+        }
+    }
+}
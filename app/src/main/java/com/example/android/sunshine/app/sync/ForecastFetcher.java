@@ -0,0 +1,392 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.ContentValues;
+import android.net.Uri;
+import android.text.format.Time;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.common.ForecastJsonParser;
+import com.example.android.sunshine.common.TeeInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.DigestInputStream;
+import java.util.ArrayList;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Downloads and parses the forecast of one location.  Nothing is stored here, the caller
+ * writes the {@link Result}s of all its locations together.
+ * <p/>
+ * Responses are asked for compressed, which shrinks the forecast JSON several times over, and
+ * decompressed and parsed as they are read.
+ * <p/>
+ * Requests are conditional on the response cached in {@link ForecastCache}.  When the server
+ * answers 304, or sends the very body we already have, the result is {@link Result#unchanged}
+ * and carries no rows: there is nothing to write.  A new response only replaces the cached one
+ * once the caller has stored its rows, see {@link Result#commitCache}.
+ * <p/>
+ * Instances reuse their parser and are not thread safe.
+ */
+class ForecastFetcher {
+    private static final String LOG_TAG = ForecastFetcher.class.getSimpleName();
+
+    // Construct the URL for the OpenWeatherMap query
+    // Possible parameters are avaiable at OWM's forecast API page, at
+    // http://openweathermap.org/API#forecast
+    private static final String QUERY_PARAM = "q";
+    private static final String FORMAT_PARAM = "mode";
+    private static final String UNITS_PARAM = "units";
+    private static final String DAYS_PARAM = "cnt";
+
+    private static final String FORMAT = "json";
+    private static final String UNITS = "metric";
+    private static final int NUM_DAYS = 14;
+
+    // Decompressed here, so the wire size can be counted; asking for it turns off the
+    // transparent gzip of HttpURLConnection
+    private static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private final ForecastJsonParser mParser = new ForecastJsonParser();
+    private final ForecastCache mCache;
+    private final String mBaseUrl;
+
+    /**
+     * The forecast of one location, or why there is none.
+     */
+    static class Result {
+        final String locationSetting;
+        @SunshineSyncAdapter.LocationStatus
+        int status = SunshineSyncAdapter.LOCATION_STATUS_UNKNOWN;
+
+        // the stored forecast is still current, rows is empty
+        boolean unchanged;
+
+        // size of the response body on the wire, and once decompressed
+        long transferredBytes;
+        long bodyBytes;
+
+        String cityName;
+        double cityLatitude;
+        double cityLongitude;
+        // one row per day, without the location key
+        final ArrayList<ContentValues> rows = new ArrayList<ContentValues>(16);
+
+        // the response, waiting to replace the cached one until the rows are stored
+        ForecastCache.Writer cacheWriter;
+        byte[] bodyHash;
+
+        Result(String locationSetting) {
+            this.locationSetting = locationSetting;
+        }
+
+        boolean hasForecast() {
+            return status == SunshineSyncAdapter.LOCATION_STATUS_OK && !rows.isEmpty();
+        }
+
+        /**
+         * Caches the response, once its rows are stored.  Cached earlier, a failed store would
+         * leave the next syncs of the day answered 304 for a forecast that was never written.
+         */
+        void commitCache() {
+            if (cacheWriter != null) {
+                cacheWriter.commit(bodyHash);
+                cacheWriter = null;
+            }
+        }
+
+        /**
+         * Drops the response, the cached one stays.
+         */
+        void abortCache() {
+            if (cacheWriter != null) {
+                cacheWriter.abort();
+                cacheWriter = null;
+            }
+        }
+    }
+
+    /**
+     * @param baseUrl the forecast endpoint, normally {@code BuildConfig.FORECAST_BASE_URL}
+     */
+    ForecastFetcher(ForecastCache cache, String baseUrl) {
+        mCache = cache;
+        mBaseUrl = baseUrl;
+    }
+
+    static URL buildUrl(String baseUrl, String locationSetting) throws IOException {
+        Uri builtUri = Uri.parse(baseUrl).buildUpon()
+                .appendQueryParameter(QUERY_PARAM, locationSetting)
+                .appendQueryParameter(FORMAT_PARAM, FORMAT)
+                .appendQueryParameter(UNITS_PARAM, UNITS)
+                .appendQueryParameter(DAYS_PARAM, Integer.toString(NUM_DAYS))
+                .build();
+        return new URL(builtUri.toString());
+    }
+
+    /**
+     * Fetches the forecast.  Failures are reported through {@link Result#status}.
+     */
+    Result fetch(String locationSetting) {
+        Result result = new Result(locationSetting);
+        SyncMetrics metrics = SyncMetrics.getInstance();
+        ForecastCache.Entry cached = mCache.get(locationSetting);
+        int today = getJulianToday();
+
+        // This needs to be declared outside the try/catch
+        // so that it can be closed in the finally block.
+        HttpURLConnection urlConnection = null;
+        try {
+            // Create the request to OpenWeatherMap, and open the connection
+            urlConnection = (HttpURLConnection) buildUrl(mBaseUrl, locationSetting)
+                    .openConnection();
+            urlConnection.setRequestMethod("GET");
+            // we keep our own copy, and know when to use it
+            urlConnection.setUseCaches(false);
+            urlConnection.setRequestProperty("Accept-Encoding", ACCEPT_ENCODING);
+            if (cached != null) {
+                if (cached.etag != null) {
+                    urlConnection.setRequestProperty("If-None-Match", cached.etag);
+                }
+                if (cached.lastModified != 0) {
+                    urlConnection.setIfModifiedSince(cached.lastModified);
+                }
+            }
+            long start = metrics.begin(SyncMetrics.STAGE_CONNECT);
+            int responseCode;
+            try {
+                urlConnection.connect();
+                // waits for the headers, so the time to the first byte counts as connecting
+                responseCode = urlConnection.getResponseCode();
+            } finally {
+                metrics.end(SyncMetrics.STAGE_CONNECT, start);
+            }
+
+            InputStream body;
+            String etag;
+            long lastModified;
+            int stage;
+            CountingInputStream wire = null;
+            CountingInputStream decoded = null;
+            if (cached != null && responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                if (cached.parsedJulianDay == today) {
+                    result.status = SunshineSyncAdapter.LOCATION_STATUS_OK;
+                    result.unchanged = true;
+                    return result;
+                }
+                // same forecast, but its days have to be placed relative to the new today
+                body = mCache.openBody(locationSetting);
+                if (body == null) {
+                    // lost our copy, ask for the whole response
+                    mCache.remove(locationSetting);
+                    urlConnection.disconnect();
+                    urlConnection = null;
+                    return fetch(locationSetting);
+                }
+                etag = cached.etag;
+                lastModified = cached.lastModified;
+                stage = SyncMetrics.STAGE_PARSE;
+            } else {
+                InputStream inputStream = urlConnection.getInputStream();
+                if (inputStream == null) {
+                    // Nothing to do.
+                    result.status = SunshineSyncAdapter.LOCATION_STATUS_SERVER_DOWN;
+                    return result;
+                }
+                wire = new CountingInputStream(inputStream);
+                decoded = new CountingInputStream(
+                        decode(wire, urlConnection.getContentEncoding()));
+                body = decoded;
+                etag = urlConnection.getHeaderField("ETag");
+                lastModified = urlConnection.getLastModified();
+                // parsed as it arrives, so the parse is timed as part of the download
+                stage = SyncMetrics.STAGE_DOWNLOAD;
+            }
+
+            // The body streams into the parser, hashed and copied to the cache on the way, so
+            // it is never held in memory as a whole.
+            DigestInputStream digest = new DigestInputStream(body, ForecastCache.newDigest());
+            ForecastCache.Writer writer = mCache.startPut(locationSetting, etag, lastModified,
+                    today);
+            InputStream source = writer != null
+                    ? new TeeInputStream(digest, writer.getBodyStream()) : digest;
+            boolean handedOver = false;
+            start = metrics.begin(stage);
+            try {
+                parse(new InputStreamReader(source, "UTF-8"), result, today);
+                // the hash and the copy cover the whole body, also what the parser didn't read
+                drain(source);
+                byte[] bodyHash = digest.getMessageDigest().digest();
+                if (cached != null && cached.parsedJulianDay == today &&
+                        cached.hasBodyHash(bodyHash)) {
+                    // the very body we have, its rows are stored already
+                    result.rows.clear();
+                    result.unchanged = true;
+                } else if (writer != null &&
+                        result.status == SunshineSyncAdapter.LOCATION_STATUS_OK) {
+                    // cached by the caller once the rows are stored
+                    result.cacheWriter = writer;
+                    result.bodyHash = bodyHash;
+                    handedOver = true;
+                }
+            } finally {
+                body.close();
+                metrics.end(stage, start);
+                if (writer != null && !handedOver) {
+                    writer.abort();
+                }
+                if (decoded != null) {
+                    result.transferredBytes = wire.getCount();
+                    result.bodyBytes = decoded.getCount();
+                }
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error ", e);
+            // If the code didn't successfully get the weather data, there's no point in attempting
+            // to parse it.
+            result.status = SunshineSyncAdapter.LOCATION_STATUS_SERVER_DOWN;
+        } catch (ForecastJsonParser.MalformedForecastException e) {
+            Log.e(LOG_TAG, e.getMessage(), e);
+            result.status = SunshineSyncAdapter.LOCATION_STATUS_SERVER_INVALID;
+        } finally {
+            if (urlConnection != null) {
+                urlConnection.disconnect();
+            }
+        }
+        return result;
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[4096];
+        while (in.read(buffer) != -1) {
+            // only the bytes passing by matter
+        }
+    }
+
+    private static InputStream decode(InputStream in, String contentEncoding)
+            throws IOException {
+        if ("gzip".equalsIgnoreCase(contentEncoding)) {
+            return new GZIPInputStream(in);
+        } else if ("deflate".equalsIgnoreCase(contentEncoding)) {
+            return new InflaterInputStream(in);
+        }
+        return in;
+    }
+
+    // we start at the day returned by local time. Otherwise this is a mess.
+    private static int getJulianToday() {
+        Time dayTime = new Time();
+        dayTime.setToNow();
+        return Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
+    }
+
+    /**
+     * Pull the forecast out of the JSON response, placing its first day on julianStartDay.
+     * <p/>
+     * {@link ForecastJsonParser} hands us each day as primitives, so no JSON object tree is
+     * ever built.
+     */
+    void parse(Reader forecastJsonReader, Result result, int julianStartDay)
+            throws IOException, ForecastJsonParser.MalformedForecastException {
+
+        // OWM returns daily forecasts based upon the local time of the city that is being
+        // asked for, which means that we need to know the GMT offset to translate this data
+        // properly.
+
+        // Since this data is also sent in-order and the first day is always the
+        // current day, we're going to take advantage of that to get a nice
+        // normalized UTC date for all of our weather.
+
+        // now we work exclusively in UTC
+        Time dayTime = new Time();
+
+        ForecastRowCollector collector = new ForecastRowCollector(result, dayTime, julianStartDay);
+        int messageCode = mParser.parse(forecastJsonReader, collector);
+
+        // do we have an error?
+        switch (messageCode) {
+            case HttpURLConnection.HTTP_OK:
+                result.status = SunshineSyncAdapter.LOCATION_STATUS_OK;
+                break;
+            case ForecastJsonParser.EMPTY_RESPONSE:
+                // Stream was empty.  No point in parsing.
+                result.status = SunshineSyncAdapter.LOCATION_STATUS_SERVER_DOWN;
+                break;
+            case HttpURLConnection.HTTP_NOT_FOUND:
+                result.status = SunshineSyncAdapter.LOCATION_STATUS_INVALID;
+                break;
+            default:
+                result.status = SunshineSyncAdapter.LOCATION_STATUS_SERVER_DOWN;
+                break;
+        }
+        if (result.status != SunshineSyncAdapter.LOCATION_STATUS_OK) {
+            result.rows.clear();
+        }
+    }
+
+    /**
+     * Turns the days reported by {@link ForecastJsonParser} into weather rows.  The location
+     * key is filled in when the rows are stored.
+     */
+    private static class ForecastRowCollector implements ForecastJsonParser.Callback {
+        final Result result;
+        final Time dayTime;
+        final int julianStartDay;
+
+        ForecastRowCollector(Result result, Time dayTime, int julianStartDay) {
+            this.result = result;
+            this.dayTime = dayTime;
+            this.julianStartDay = julianStartDay;
+        }
+
+        @Override
+        public void onCity(String cityName, double lat, double lon) {
+            result.cityName = cityName;
+            result.cityLatitude = lat;
+            result.cityLongitude = lon;
+        }
+
+        @Override
+        public void onDay(int dayIndex, double pressure, int humidity, double windSpeed,
+                          double windDirection, double high, double low, String description,
+                          int weatherId) {
+            // Cheating to convert this to UTC time, which is what we want anyhow
+            long dateTime = dayTime.setJulianDay(julianStartDay + dayIndex);
+
+            ContentValues weatherValues = new ContentValues();
+
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, dateTime);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, humidity);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, pressure);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, windSpeed);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, windDirection);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, high);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, low);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, description);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId);
+
+            result.rows.add(weatherValues);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches the forecasts of several locations at once.
+ * <p/>
+ * Every location is fetched from the same weather service, so the pool's
+ * {@link #MAX_CONCURRENT_FETCHES} threads are also the most requests it gets from a sync at a
+ * time, and a long list of locations can't flood it.  With the locations fitting in the pool,
+ * the whole set takes about as long as its slowest fetch.  Threads are only started for as many
+ * fetches as there are, and go away when there is nothing to fetch.
+ */
+class ParallelForecastSync {
+    private static final String LOG_TAG = ParallelForecastSync.class.getSimpleName();
+
+    static final int MAX_CONCURRENT_FETCHES = 4;
+    private static final long IDLE_THREAD_TIMEOUT_SECONDS = 30;
+
+    private final ForecastCache mCache;
+    private final String mBaseUrl;
+    private final ExecutorService mExecutor;
+
+    // The parser of a fetcher keeps its buffers, so every thread keeps its fetcher
+    private final ThreadLocal<ForecastFetcher> mFetcher = new ThreadLocal<ForecastFetcher>() {
+        @Override
+        protected ForecastFetcher initialValue() {
+            return new ForecastFetcher(mCache, mBaseUrl);
+        }
+    };
+
+    ParallelForecastSync(ForecastCache cache, String baseUrl) {
+        this(cache, baseUrl, MAX_CONCURRENT_FETCHES);
+    }
+
+    ParallelForecastSync(ForecastCache cache, String baseUrl, int maxConcurrentFetches) {
+        mCache = cache;
+        mBaseUrl = baseUrl;
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxConcurrentFetches,
+                maxConcurrentFetches, IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new FetchThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        mExecutor = executor;
+    }
+
+    private static class FetchThreadFactory implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ForecastFetch #" + mCount.incrementAndGet());
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    }
+
+    /**
+     * Fetches the forecasts of the locations, waiting for all of them.
+     *
+     * @return one result per location, in the order of the locations
+     */
+    List<ForecastFetcher.Result> fetchAll(List<String> locationSettings) {
+        ArrayList<ForecastFetcher.Result> results =
+                new ArrayList<ForecastFetcher.Result>(locationSettings.size());
+        if (locationSettings.size() == 1) {
+            // nothing to overlap with, skip the hand-off
+            results.add(mFetcher.get().fetch(locationSettings.get(0)));
+            return results;
+        }
+
+        ArrayList<Future<ForecastFetcher.Result>> futures =
+                new ArrayList<Future<ForecastFetcher.Result>>(locationSettings.size());
+        for (final String locationSetting : locationSettings) {
+            futures.add(mExecutor.submit(new Callable<ForecastFetcher.Result>() {
+                @Override
+                public ForecastFetcher.Result call() {
+                    return mFetcher.get().fetch(locationSetting);
+                }
+            }));
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            ForecastFetcher.Result result;
+            try {
+                result = futures.get(i).get();
+            } catch (InterruptedException e) {
+                // the sync was cancelled, don't leave fetches behind
+                for (Future<ForecastFetcher.Result> future : futures) {
+                    future.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                // the remaining futures are cancelled, their locations get no forecast
+                for (int j = i; j < futures.size(); j++) {
+                    results.add(new ForecastFetcher.Result(locationSettings.get(j)));
+                }
+                break;
+            } catch (ExecutionException e) {
+                Log.e(LOG_TAG, "Error fetching " + locationSettings.get(i), e.getCause());
+                result = new ForecastFetcher.Result(locationSettings.get(i));
+            }
+            results.add(result);
+        }
+        return results;
+    }
+}
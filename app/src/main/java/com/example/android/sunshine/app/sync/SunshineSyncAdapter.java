@@ -7,11 +7,12 @@ import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.content.AbstractThreadedSyncAdapter;
 import android.content.ContentProviderClient;
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
-import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
+import android.content.OperationApplicationException;
 import android.content.SharedPreferences;
 import android.content.SyncRequest;
 import android.content.SyncResult;
@@ -22,41 +23,31 @@ import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.RemoteException;
 import android.preference.PreferenceManager;
 import android.support.annotation.IntDef;
 import android.support.v4.app.NotificationCompat;
 import android.support.v4.app.TaskStackBuilder;
 import android.text.format.Time;
+import android.util.Base64;
 import android.util.Log;
 
 import com.bumptech.glide.Glide;
+import com.example.android.sunshine.app.BuildConfig;
 import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
 import com.example.android.sunshine.app.data.WeatherContract;
-import com.google.android.gms.common.ConnectionResult;
-import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.common.api.ResultCallback;
-import com.google.android.gms.wearable.Asset;
-import com.google.android.gms.wearable.DataApi;
+import com.example.android.sunshine.common.WeatherPayload;
 import com.google.android.gms.wearable.PutDataMapRequest;
 import com.google.android.gms.wearable.PutDataRequest;
-import com.google.android.gms.wearable.Wearable;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.Vector;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
 import java.util.concurrent.ExecutionException;
 
 public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
@@ -94,278 +85,167 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     public static final int LOCATION_STATUS_INVALID = 4;
 
     // Wearable stuff
-    private final String WEATHER_PATH = "/weather";
-    private final String WEATHER_TEMP_HIGH_KEY = "weather_temp_high_key";
-    private final String WEATHER_TEMP_LOW_KEY = "weather_temp_low_key";
-    private final String WEATHER_TEMP_ICON_KEY = "weather_temp_icon_key";
-    private final int WEATHER_TEMP_ICON_RESIZE_WIDTH = 52;
-    private final int WEATHER_TEMP_ICON_RESIZE_HEIGHT = 52;
+    private static final String[] WEAR_FORECAST_PROJECTION = new String[]{
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID
+    };
+
+    // these indices must match the projection
+    private static final int INDEX_WEAR_DATE = 0;
+    private static final int INDEX_WEAR_MAX_TEMP = 1;
+    private static final int INDEX_WEAR_MIN_TEMP = 2;
+    private static final int INDEX_WEAR_WEATHER_ID = 3;
+
+    // Fetches the locations of a sync side by side, kept for the threads it holds
+    private final ParallelForecastSync mParallelSync;
 
     public SunshineSyncAdapter(Context context, boolean autoInitialize) {
+        this(context, autoInitialize, BuildConfig.FORECAST_BASE_URL);
+    }
+
+    /**
+     * @param forecastBaseUrl where forecasts are fetched from, a local server in tests
+     */
+    SunshineSyncAdapter(Context context, boolean autoInitialize, String forecastBaseUrl) {
         super(context, autoInitialize);
+        mParallelSync = new ParallelForecastSync(new ForecastCache(context), forecastBaseUrl);
     }
 
     @Override
     public void onPerformSync(Account account, Bundle extras, String authority, ContentProviderClient provider, SyncResult syncResult) {
         Log.d(LOG_TAG, "Starting sync");
-        String locationQuery = Utility.getPreferredLocation(getContext());
-
-        // These two need to be declared outside the try/catch
-        // so that they can be closed in the finally block.
-        HttpURLConnection urlConnection = null;
-        BufferedReader reader = null;
-
-        // Will contain the raw JSON response as a string.
-        String forecastJsonStr = null;
-
-        String format = "json";
-        String units = "metric";
-        int numDays = 14;
-
+        SyncMetrics metrics = SyncMetrics.getInstance();
+        metrics.add(SyncMetrics.COUNTER_SYNCS, 1);
+        List<String> locations = Utility.getSyncLocations(getContext());
+        String preferredLocation = locations.get(0);
+
+        // Start connecting to the watch now so the handshake overlaps with the download.
+        WearableClientManager wearableClient = WearableClientManager.getInstance(getContext());
+        wearableClient.acquire();
+        long syncStart = metrics.begin(SyncMetrics.STAGE_SYNC);
         try {
-            // Construct the URL for the OpenWeatherMap query
-            // Possible parameters are avaiable at OWM's forecast API page, at
-            // http://openweathermap.org/API#forecast
-            final String FORECAST_BASE_URL =
-                    "http://api.openweathermap.org/data/2.5/forecast/daily?";
-            final String QUERY_PARAM = "q";
-            final String FORMAT_PARAM = "mode";
-            final String UNITS_PARAM = "units";
-            final String DAYS_PARAM = "cnt";
-
-            Uri builtUri = Uri.parse(FORECAST_BASE_URL).buildUpon()
-                    .appendQueryParameter(QUERY_PARAM, locationQuery)
-                    .appendQueryParameter(FORMAT_PARAM, format)
-                    .appendQueryParameter(UNITS_PARAM, units)
-                    .appendQueryParameter(DAYS_PARAM, Integer.toString(numDays))
-                    .build();
-
-            URL url = new URL(builtUri.toString());
-
-            // Create the request to OpenWeatherMap, and open the connection
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
-
-            // Read the input stream into a String
-            InputStream inputStream = urlConnection.getInputStream();
-            StringBuffer buffer = new StringBuffer();
-            if (inputStream == null) {
-                // Nothing to do.
-                return;
-            }
-            reader = new BufferedReader(new InputStreamReader(inputStream));
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // Since it's JSON, adding a newline isn't necessary (it won't affect parsing)
-                // But it does make debugging a *lot* easier if you print out the completed
-                // buffer for debugging.
-                buffer.append(line + "\n");
+            List<ForecastFetcher.Result> results = mParallelSync.fetchAll(locations);
+            ForecastFetcher.Result preferred = results.get(0);
+            long start = metrics.begin(SyncMetrics.STAGE_STORE);
+            boolean stored = false;
+            try {
+                stored = storeForecasts(results);
+            } finally {
+                metrics.end(SyncMetrics.STAGE_STORE, start);
+                // the responses are cached only with their rows stored, so a failed store is
+                // fetched in full again
+                for (ForecastFetcher.Result result : results) {
+                    if (stored) {
+                        result.commitCache();
+                    } else {
+                        result.abortCache();
+                    }
+                }
             }
-
-            if (buffer.length() == 0) {
-                // Stream was empty.  No point in parsing.
-                setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
+            if (!stored) {
+                metrics.add(SyncMetrics.COUNTER_STORE_FAILURES, 1);
+                setLocationStatus(getContext(), LOCATION_STATUS_UNKNOWN);
                 return;
             }
-            forecastJsonStr = buffer.toString();
-            getWeatherDataFromJson(forecastJsonStr, locationQuery);
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "Error ", e);
-            // If the code didn't successfully get the weather data, there's no point in attempting
-            // to parse it.
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
-        } catch (JSONException e) {
-            Log.e(LOG_TAG, e.getMessage(), e);
-            e.printStackTrace();
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_INVALID);
-        } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
+
+            long transferredBytes = 0;
+            long bodyBytes = 0;
+            for (ForecastFetcher.Result result : results) {
+                if (result.status != LOCATION_STATUS_OK) {
+                    Log.w(LOG_TAG, "No forecast for " + result.locationSetting +
+                            ", status " + result.status);
+                    metrics.add(SyncMetrics.COUNTER_FETCH_FAILURES, 1);
+                } else if (result.unchanged) {
+                    metrics.add(SyncMetrics.COUNTER_UNCHANGED, 1);
+                }
+                transferredBytes += result.transferredBytes;
+                bodyBytes += result.bodyBytes;
+                metrics.add(SyncMetrics.COUNTER_ROWS, result.rows.size());
             }
-            if (reader != null) {
+            metrics.add(SyncMetrics.COUNTER_FETCHES, results.size());
+            metrics.add(SyncMetrics.COUNTER_WIRE_BYTES, transferredBytes);
+            metrics.add(SyncMetrics.COUNTER_BODY_BYTES, bodyBytes);
+            Log.d(LOG_TAG, "Downloaded " + transferredBytes + " bytes, " + bodyBytes +
+                    " uncompressed, for " + results.size() + " locations");
+            if (preferred.hasForecast()) {
+                start = metrics.begin(SyncMetrics.STAGE_NOTIFY);
                 try {
-                    reader.close();
-                } catch (final IOException e) {
-                    Log.e(LOG_TAG, "Error closing stream", e);
+                    notifyWeather();
+                } finally {
+                    metrics.end(SyncMetrics.STAGE_NOTIFY, start);
                 }
+
+                // send weather info to watch
+                sendToWear(preferredLocation);
+                Log.d(LOG_TAG, "Sync Complete. " + preferred.rows.size() + " Inserted");
+            } else if (preferred.unchanged) {
+                // The notification already showed it.  The watch is only skipped if it has
+                // it too, so a send that failed is retried.
+                sendToWear(preferredLocation);
+                Log.d(LOG_TAG, "Sync Complete. Forecast unchanged");
             }
+            setLocationStatus(getContext(), preferred.status);
+        } finally {
+            metrics.end(SyncMetrics.STAGE_SYNC, syncStart);
+            wearableClient.release();
         }
-        return;
     }
 
     /**
-     * Take the String representing the complete forecast in JSON Format and
-     * pull out the data we need to construct the Strings needed for the wireframes.
-     * <p/>
-     * Fortunately parsing is easy:  constructor takes the JSON string and converts it
-     * into an Object hierarchy for us.
+     * Stores the forecasts that came in, all locations in one transaction, so they are never
+     * seen half written and observers hear about the sync once.
+     *
+     * @return false if they couldn't be stored
      */
-    private void getWeatherDataFromJson(String forecastJsonStr,
-                                        String locationSetting)
-            throws JSONException {
-
-        // Now we have a String representing the complete forecast in JSON Format.
-        // Fortunately parsing is easy:  constructor takes the JSON string and converts it
-        // into an Object hierarchy for us.
-
-        // These are the names of the JSON objects that need to be extracted.
-
-        // Location information
-        final String OWM_CITY = "city";
-        final String OWM_CITY_NAME = "name";
-        final String OWM_COORD = "coord";
-
-        // Location coordinate
-        final String OWM_LATITUDE = "lat";
-        final String OWM_LONGITUDE = "lon";
-
-        // Weather information.  Each day's forecast info is an element of the "list" array.
-        final String OWM_LIST = "list";
-
-        final String OWM_PRESSURE = "pressure";
-        final String OWM_HUMIDITY = "humidity";
-        final String OWM_WINDSPEED = "speed";
-        final String OWM_WIND_DIRECTION = "deg";
-
-        // All temperatures are children of the "temp" object.
-        final String OWM_TEMPERATURE = "temp";
-        final String OWM_MAX = "max";
-        final String OWM_MIN = "min";
-
-        final String OWM_WEATHER = "weather";
-        final String OWM_DESCRIPTION = "main";
-        final String OWM_WEATHER_ID = "id";
-
-        final String OWM_MESSAGE_CODE = "cod";
-
-        try {
-            JSONObject forecastJson = new JSONObject(forecastJsonStr);
-
-            // do we have an error?
-            if (forecastJson.has(OWM_MESSAGE_CODE)) {
-                int errorCode = forecastJson.getInt(OWM_MESSAGE_CODE);
-
-                switch (errorCode) {
-                    case HttpURLConnection.HTTP_OK:
-                        break;
-                    case HttpURLConnection.HTTP_NOT_FOUND:
-                        setLocationStatus(getContext(), LOCATION_STATUS_INVALID);
-                        return;
-                    default:
-                        setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
-                        return;
-                }
+    private boolean storeForecasts(List<ForecastFetcher.Result> results) {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+        for (ForecastFetcher.Result result : results) {
+            if (!result.hasForecast()) {
+                continue;
             }
-
-            JSONArray weatherArray = forecastJson.getJSONArray(OWM_LIST);
-
-            JSONObject cityJson = forecastJson.getJSONObject(OWM_CITY);
-            String cityName = cityJson.getString(OWM_CITY_NAME);
-
-            JSONObject cityCoord = cityJson.getJSONObject(OWM_COORD);
-            double cityLatitude = cityCoord.getDouble(OWM_LATITUDE);
-            double cityLongitude = cityCoord.getDouble(OWM_LONGITUDE);
-
-            long locationId = addLocation(locationSetting, cityName, cityLatitude, cityLongitude);
-
-            // Insert the new weather information into the database
-            Vector<ContentValues> cVVector = new Vector<ContentValues>(weatherArray.length());
-
-            // OWM returns daily forecasts based upon the local time of the city that is being
-            // asked for, which means that we need to know the GMT offset to translate this data
-            // properly.
-
-            // Since this data is also sent in-order and the first day is always the
-            // current day, we're going to take advantage of that to get a nice
-            // normalized UTC date for all of our weather.
-
-            Time dayTime = new Time();
-            dayTime.setToNow();
-
-            // we start at the day returned by local time. Otherwise this is a mess.
-            int julianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
-
-            // now we work exclusively in UTC
-            dayTime = new Time();
-
-            for (int i = 0; i < weatherArray.length(); i++) {
-                // These are the values that will be collected.
-                long dateTime;
-                double pressure;
-                int humidity;
-                double windSpeed;
-                double windDirection;
-
-                double high;
-                double low;
-
-                String description;
-                int weatherId;
-
-                // Get the JSON object representing the day
-                JSONObject dayForecast = weatherArray.getJSONObject(i);
-
-                // Cheating to convert this to UTC time, which is what we want anyhow
-                dateTime = dayTime.setJulianDay(julianStartDay + i);
-
-                pressure = dayForecast.getDouble(OWM_PRESSURE);
-                humidity = dayForecast.getInt(OWM_HUMIDITY);
-                windSpeed = dayForecast.getDouble(OWM_WINDSPEED);
-                windDirection = dayForecast.getDouble(OWM_WIND_DIRECTION);
-
-                // Description is in a child array called "weather", which is 1 element long.
-                // That element also contains a weather code.
-                JSONObject weatherObject =
-                        dayForecast.getJSONArray(OWM_WEATHER).getJSONObject(0);
-                description = weatherObject.getString(OWM_DESCRIPTION);
-                weatherId = weatherObject.getInt(OWM_WEATHER_ID);
-
-                // Temperatures are in a child object called "temp".  Try not to name variables
-                // "temp" when working with temperature.  It confuses everybody.
-                JSONObject temperatureObject = dayForecast.getJSONObject(OWM_TEMPERATURE);
-                high = temperatureObject.getDouble(OWM_MAX);
-                low = temperatureObject.getDouble(OWM_MIN);
-
-                ContentValues weatherValues = new ContentValues();
-
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationId);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, dateTime);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, humidity);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, pressure);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, windSpeed);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, windDirection);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, high);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, low);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, description);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId);
-
-                cVVector.add(weatherValues);
+            int locationOperation = operations.size();
+            operations.add(ContentProviderOperation
+                    .newInsert(WeatherContract.LocationEntry.CONTENT_UPSERT_URI)
+                    .withValues(buildLocationValues(result.locationSetting, result.cityName,
+                            result.cityLatitude, result.cityLongitude))
+                    .build());
+            for (ContentValues weatherValues : result.rows) {
+                // the location ID comes from the result of the upsert
+                operations.add(ContentProviderOperation
+                        .newInsert(WeatherContract.WeatherEntry.CONTENT_URI)
+                        .withValues(weatherValues)
+                        .withValueBackReference(WeatherContract.WeatherEntry.COLUMN_LOC_KEY,
+                                locationOperation)
+                        .build());
             }
+        }
+        if (operations.isEmpty()) {
+            return true;
+        }
 
-            int inserted = 0;
-            // add to database
-            if (cVVector.size() > 0) {
-                ContentValues[] cvArray = new ContentValues[cVVector.size()];
-                cVVector.toArray(cvArray);
-                getContext().getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, cvArray);
-
-                // delete old data so we don't build up an endless history
-                getContext().getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
-                        WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
-                        new String[]{Long.toString(dayTime.setJulianDay(julianStartDay - 1))});
-
-                notifyWeather();
-            }
-            Log.d(LOG_TAG, "Sync Complete. " + cVVector.size() + " Inserted");
-            setLocationStatus(getContext(), LOCATION_STATUS_OK);
+        // delete old data so we don't build up an endless history
+        Time dayTime = new Time();
+        dayTime.setToNow();
+        int julianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
+        dayTime = new Time();
+        operations.add(ContentProviderOperation
+                .newDelete(WeatherContract.WeatherEntry.CONTENT_URI)
+                .withSelection(WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
+                        new String[]{Long.toString(dayTime.setJulianDay(julianStartDay - 1))})
+                .build());
 
-        } catch (JSONException e) {
-            Log.e(LOG_TAG, e.getMessage(), e);
-            e.printStackTrace();
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_INVALID);
+        try {
+            getContext().getContentResolver().applyBatch(
+                    WeatherContract.CONTENT_AUTHORITY, operations);
+            return true;
+        } catch (RemoteException e) {
+            Log.e(LOG_TAG, "Error storing the forecast", e);
+        } catch (OperationApplicationException e) {
+            Log.e(LOG_TAG, "Error storing the forecast", e);
         }
+        return false;
     }
 
     private void notifyWeather() {
@@ -465,11 +345,6 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
                     // WEATHER_NOTIFICATION_ID allows you to update the notification later on.
                     mNotificationManager.notify(WEATHER_NOTIFICATION_ID, mBuilder.build());
 
-
-                    // send weather info to watch
-                    sendToWear(largeIcon, weatherId, high, low);
-
-
                     //refreshing last sync
                     SharedPreferences.Editor editor = prefs.edit();
                     editor.putLong(lastNotificationKey, System.currentTimeMillis());
@@ -481,155 +356,114 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     }
 
 
-    private void sendToWear(Bitmap largeIcon, int weatherId, double high, double low) {
-
-        Context context = getContext();
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        final int UNKNOWN_TEMP = -9999;
-        double lastTempHigh = prefs.getFloat(context.getString(R.string.pref_last_temp_high), UNKNOWN_TEMP);
-        double lastTempLow = prefs.getFloat(context.getString(R.string.pref_last_temp_low), UNKNOWN_TEMP);
-        int lastTempDesc = prefs.getInt(context.getString(R.string.pref_last_temp_desc), UNKNOWN_TEMP);
-
-        if (lastTempHigh != UNKNOWN_TEMP && lastTempLow != UNKNOWN_TEMP && lastTempDesc != UNKNOWN_TEMP) {
-            if ((lastTempHigh == high && lastTempLow == low && lastTempDesc == weatherId))
-                return;// if it is the same data do nothing,ie don't send to the wearable
+    /**
+     * Sends the stored forecast for the location to the watch as a {@link WeatherPayload}, unless
+     * the watch already has the same forecast.
+     */
+    private void sendToWear(String locationSetting) {
+        final Context context = getContext();
+
+        Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                locationSetting, System.currentTimeMillis());
+        Cursor cursor = context.getContentResolver().query(weatherUri, WEAR_FORECAST_PROJECTION,
+                null, null, WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        if (cursor == null) {
+            return;
         }
 
-        //save the new weather data
-        SharedPreferences.Editor editor = prefs.edit();
-        editor.putFloat(context.getString(R.string.pref_last_temp_high), (float)high);
-        editor.putFloat(context.getString(R.string.pref_last_temp_low),(float) low);
-        editor.putInt(context.getString(R.string.pref_last_temp_desc), lastTempDesc);
-        editor.commit();
-
-        final GoogleApiClient mGoogleApiClient;
-
-
-        mGoogleApiClient = new GoogleApiClient.Builder(context)
-                .addApi(Wearable.API)
-                .addConnectionCallbacks(connectionCallbacks)
-                .addOnConnectionFailedListener(connectionFailedListener)
-                .build();
-
-        // connect to api
-        mGoogleApiClient.connect();
-
-        // resize weather icon and create asset
-        Asset asset = toAsset(Bitmap.createScaledBitmap(largeIcon, WEATHER_TEMP_ICON_RESIZE_WIDTH, WEATHER_TEMP_ICON_RESIZE_HEIGHT, true));
+        WeatherPayload payload;
+        try {
+            int count = Math.min(cursor.getCount(), WeatherPayload.MAX_DAYS);
+            short[] highs = new short[count];
+            short[] lows = new short[count];
+            short[] weatherIds = new short[count];
+            // the dates are local midnights, counted the way the watch counts today
+            TimeZone zone = TimeZone.getDefault();
+            int firstDay = 0;
+            int days = 0;
+            while (days < count && cursor.moveToNext()) {
+                int day = WeatherPayload.toDay(cursor.getLong(INDEX_WEAR_DATE), zone);
+                if (days == 0) {
+                    firstDay = day;
+                } else if (day != firstDay + days) {
+                    // the payload only describes consecutive days
+                    break;
+                }
+                highs[days] = WeatherPayload.toFixedPoint(cursor.getDouble(INDEX_WEAR_MAX_TEMP));
+                lows[days] = WeatherPayload.toFixedPoint(cursor.getDouble(INDEX_WEAR_MIN_TEMP));
+                weatherIds[days] = (short) cursor.getInt(INDEX_WEAR_WEATHER_ID);
+                days++;
+            }
+            if (days == 0) {
+                return;
+            }
+            payload = new WeatherPayload(System.currentTimeMillis(), firstDay,
+                    Utility.isMetric(context), Arrays.copyOf(highs, days),
+                    Arrays.copyOf(lows, days), Arrays.copyOf(weatherIds, days));
+        } finally {
+            cursor.close();
+        }
 
-        PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(WEATHER_PATH);
-        // only send the new data
-        if (lastTempHigh != high)
-            putDataMapRequest.getDataMap().putString(WEATHER_TEMP_HIGH_KEY, Utility.formatTemperature(context, high));
-        if (lastTempLow != low)
-            putDataMapRequest.getDataMap().putString(WEATHER_TEMP_LOW_KEY, Utility.formatTemperature(context, low));
-        if (lastTempDesc != weatherId)
-            putDataMapRequest.getDataMap().putAsset(WEATHER_TEMP_ICON_KEY, asset);
+        final String lastPayloadKey = context.getString(R.string.pref_last_wear_payload);
+        String lastPayload = PreferenceManager.getDefaultSharedPreferences(context)
+                .getString(lastPayloadKey, null);
+        if (lastPayload != null) {
+            try {
+                if (payload.sameForecast(WeatherPayload.fromBytes(
+                        Base64.decode(lastPayload, Base64.DEFAULT)))) {
+                    return;// if it is the same data do nothing,ie don't send to the wearable
+                }
+            } catch (IllegalArgumentException e) {
+                // written by an older version, send the new one
+            }
+        }
 
+        final byte[] bytes = payload.toBytes();
+        // timed until the Data API answers, which happens on another thread
+        final long sendStart = System.nanoTime();
+        PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(WeatherPayload.PATH);
+        putDataMapRequest.getDataMap().putByteArray(WeatherPayload.KEY, bytes);
 
+        // The shared client queues the request until it is connected.
         PutDataRequest request = putDataMapRequest.asPutDataRequest();
-        Wearable.DataApi.putDataItem(mGoogleApiClient, request).setResultCallback(new ResultCallback<DataApi.DataItemResult>() {
+        WearableClientManager.getInstance(context).putDataItem(request, new WearableClientManager.PutCallback() {
             @Override
-            public void onResult(DataApi.DataItemResult dataItemResult) {
-                if (dataItemResult.getStatus().isSuccess()) {
-                    Log.d(LOG_TAG, "Successfully send weather info");
-                } else {
+            public void onResult(boolean success) {
+                SyncMetrics metrics = SyncMetrics.getInstance();
+                metrics.record(SyncMetrics.STAGE_WEAR, System.nanoTime() - sendStart,
+                        System.currentTimeMillis());
+                if (!success) {
+                    metrics.add(SyncMetrics.COUNTER_WEAR_FAILURES, 1);
                     Log.e(LOG_TAG, "Failed to send weather info ");
+                    return;
                 }
-                // after send data we can disconnect
-                mGoogleApiClient.disconnect();
-            }
-        });
-
+                Log.d(LOG_TAG, "Successfully send weather info, " + bytes.length + " bytes");
+                metrics.add(SyncMetrics.COUNTER_WEAR_BYTES, bytes.length);
 
-    }
-
-    private static Asset toAsset(Bitmap bitmap) {
-        ByteArrayOutputStream byteStream = null;
-        try {
-            byteStream = new ByteArrayOutputStream();
-            bitmap.compress(Bitmap.CompressFormat.PNG, 100, byteStream);
-            return Asset.createFromBytes(byteStream.toByteArray());
-        } finally {
-            if (null != byteStream) {
-                try {
-                    byteStream.close();
-                } catch (IOException e) {
-                    // ignore
-                }
+                // only remember what the watch actually received, so a failed send is retried
+                SharedPreferences.Editor editor = PreferenceManager.getDefaultSharedPreferences(context).edit();
+                editor.putString(lastPayloadKey, Base64.encodeToString(bytes, Base64.NO_WRAP));
+                editor.apply();
             }
-        }
+        });
     }
 
-
-    GoogleApiClient.OnConnectionFailedListener connectionFailedListener = new GoogleApiClient.OnConnectionFailedListener() {
-        @Override
-        public void onConnectionFailed(ConnectionResult result) {
-            Log.e(LOG_TAG, "Connection to Google API client has failed");
-        }
-    };
-
-    GoogleApiClient.ConnectionCallbacks connectionCallbacks = new GoogleApiClient.ConnectionCallbacks() {
-        @Override
-        public void onConnected(Bundle bundle) {
-            Log.v(LOG_TAG, "Google API Client was connected");
-        }
-
-        @Override
-        public void onConnectionSuspended(int i) {
-            Log.v(LOG_TAG, "Connection to Google API client was suspended");
-        }
-    };
-
-
     /**
-     * Helper method to handle insertion of a new location in the weather database.
+     * Builds the location row to store with a forecast.
      *
      * @param locationSetting The location string used to request updates from the server.
      * @param cityName        A human-readable city name, e.g "Mountain View"
      * @param lat             the latitude of the city
      * @param lon             the longitude of the city
-     * @return the row ID of the added location.
      */
-    long addLocation(String locationSetting, String cityName, double lat, double lon) {
-        long locationId;
-
-        // First, check if the location with this city name exists in the db
-        Cursor locationCursor = getContext().getContentResolver().query(
-                WeatherContract.LocationEntry.CONTENT_URI,
-                new String[]{WeatherContract.LocationEntry._ID},
-                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
-                new String[]{locationSetting},
-                null);
-
-        if (locationCursor.moveToFirst()) {
-            int locationIdIndex = locationCursor.getColumnIndex(WeatherContract.LocationEntry._ID);
-            locationId = locationCursor.getLong(locationIdIndex);
-        } else {
-            // Now that the content provider is set up, inserting rows of data is pretty simple.
-            // First create a ContentValues object to hold the data you want to insert.
-            ContentValues locationValues = new ContentValues();
-
-            // Then add the data, along with the corresponding name of the data type,
-            // so the content provider knows what kind of value is being inserted.
-            locationValues.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, cityName);
-            locationValues.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, locationSetting);
-            locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, lat);
-            locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, lon);
-
-            // Finally, insert location data into the database.
-            Uri insertedUri = getContext().getContentResolver().insert(
-                    WeatherContract.LocationEntry.CONTENT_URI,
-                    locationValues
-            );
-
-            // The resulting URI contains the ID for the row.  Extract the locationId from the Uri.
-            locationId = ContentUris.parseId(insertedUri);
-        }
-
-        locationCursor.close();
-        // Wait, that worked?  Yes!
-        return locationId;
+    static ContentValues buildLocationValues(String locationSetting, String cityName,
+                                             double lat, double lon) {
+        ContentValues locationValues = new ContentValues();
+        locationValues.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, cityName);
+        locationValues.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, locationSetting);
+        locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, lat);
+        locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, lon);
+        return locationValues;
     }
 
     /**
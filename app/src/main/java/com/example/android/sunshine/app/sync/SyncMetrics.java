@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+
+import java.io.PrintWriter;
+
+/**
+ * Where the syncs of this process spent their time, kept without allocating so it can stay on
+ * in the field.
+ * <p/>
+ * Each stage of a sync is timed as a span: {@link #begin} before it, {@link #end} after.  The
+ * last {@link #RING_SIZE} spans are kept in a ring, and every span also lands in a histogram
+ * of its stage with power of two buckets, so latencies can be compared across many syncs.
+ * Counters add up bytes, rows and failures.  Spans are also systrace sections on devices that
+ * have them.  Everything is printed by {@link #dump}, see {@link SunshineSyncService#dump}.
+ */
+final class SyncMetrics {
+
+    // The stages of a sync, onPerformSync being the whole of it
+    static final int STAGE_SYNC = 0;
+    static final int STAGE_CONNECT = 1;
+    static final int STAGE_DOWNLOAD = 2;
+    static final int STAGE_PARSE = 3;
+    static final int STAGE_STORE = 4;
+    static final int STAGE_NOTIFY = 5;
+    static final int STAGE_WEAR = 6;
+    private static final int STAGE_COUNT = 7;
+
+    private static final String[] STAGE_NAMES = {
+            "sync", "connect", "download", "parse", "store", "notify", "wear"
+    };
+
+    static final int COUNTER_SYNCS = 0;
+    static final int COUNTER_FETCHES = 1;
+    static final int COUNTER_FETCH_FAILURES = 2;
+    static final int COUNTER_UNCHANGED = 3;
+    static final int COUNTER_WIRE_BYTES = 4;
+    static final int COUNTER_BODY_BYTES = 5;
+    static final int COUNTER_ROWS = 6;
+    static final int COUNTER_STORE_FAILURES = 7;
+    static final int COUNTER_WEAR_BYTES = 8;
+    static final int COUNTER_WEAR_FAILURES = 9;
+    private static final int COUNTER_COUNT = 10;
+
+    private static final String[] COUNTER_NAMES = {
+            "syncs", "fetches", "fetch failures", "unchanged", "wire bytes", "body bytes",
+            "rows", "store failures", "wear bytes", "wear failures"
+    };
+
+    static final int RING_SIZE = 256;
+
+    // Bucket i holds spans shorter than 2^i microseconds, the last one everything longer
+    private static final int BUCKET_COUNT = 26;
+
+    private static final SyncMetrics sInstance = new SyncMetrics();
+
+    private final long[] mCounters = new long[COUNTER_COUNT];
+    private final long[][] mHistograms = new long[STAGE_COUNT][BUCKET_COUNT];
+    private final long[] mMaxNanos = new long[STAGE_COUNT];
+    private final long[] mTotalNanos = new long[STAGE_COUNT];
+
+    // The ring of the last spans, mRingNext being where the next one goes
+    private final int[] mRingStages = new int[RING_SIZE];
+    private final long[] mRingEndMillis = new long[RING_SIZE];
+    private final long[] mRingNanos = new long[RING_SIZE];
+    private long mSpans;
+
+    static SyncMetrics getInstance() {
+        return sInstance;
+    }
+
+    SyncMetrics() {
+    }
+
+    /**
+     * Starts a span of the stage.
+     *
+     * @return the start, to hand to {@link #end}
+     */
+    long begin(int stage) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            beginSection(STAGE_NAMES[stage]);
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Ends a span started with {@link #begin} on this thread.
+     */
+    void end(int stage, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            endSection();
+        }
+        record(stage, nanos, System.currentTimeMillis());
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static void beginSection(String name) {
+        Trace.beginSection(name);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static void endSection() {
+        Trace.endSection();
+    }
+
+    synchronized void record(int stage, long nanos, long endMillis) {
+        mHistograms[stage][bucket(nanos)]++;
+        mTotalNanos[stage] += nanos;
+        if (nanos > mMaxNanos[stage]) {
+            mMaxNanos[stage] = nanos;
+        }
+
+        int slot = (int) (mSpans % RING_SIZE);
+        mRingStages[slot] = stage;
+        mRingEndMillis[slot] = endMillis;
+        mRingNanos[slot] = nanos;
+        mSpans++;
+    }
+
+    synchronized void add(int counter, long delta) {
+        mCounters[counter] += delta;
+    }
+
+    synchronized long getCounter(int counter) {
+        return mCounters[counter];
+    }
+
+    /**
+     * The number of spans of the stage recorded so far.
+     */
+    synchronized long getCount(int stage) {
+        long count = 0;
+        for (long bucket : mHistograms[stage]) {
+            count += bucket;
+        }
+        return count;
+    }
+
+    /**
+     * An upper bound of the given percentile of the stage's spans, from its histogram.
+     *
+     * @return nanoseconds, 0 if there was no span
+     */
+    synchronized long getPercentileNanos(int stage, int percentile) {
+        long count = getCount(stage);
+        if (count == 0) {
+            return 0;
+        }
+        // the rank of the span that has percentile percent of the spans at or below it
+        long rank = (count * percentile + 99) / 100;
+        long seen = 0;
+        long[] buckets = mHistograms[stage];
+        for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return Math.min((1L << i) * 1000, mMaxNanos[stage]);
+            }
+        }
+        return mMaxNanos[stage];
+    }
+
+    synchronized void reset() {
+        for (int i = 0; i < COUNTER_COUNT; i++) {
+            mCounters[i] = 0;
+        }
+        for (int stage = 0; stage < STAGE_COUNT; stage++) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                mHistograms[stage][i] = 0;
+            }
+            mMaxNanos[stage] = 0;
+            mTotalNanos[stage] = 0;
+        }
+        mSpans = 0;
+    }
+
+    private static int bucket(long nanos) {
+        long micros = nanos / 1000;
+        // the first power of two above micros
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    /**
+     * Prints the counters, the latencies of each stage and the last spans, oldest first.
+     */
+    synchronized void dump(PrintWriter writer) {
+        writer.println("Counters:");
+        for (int i = 0; i < COUNTER_COUNT; i++) {
+            writer.println("  " + COUNTER_NAMES[i] + ": " + mCounters[i]);
+        }
+
+        writer.println("Stages (ms): count mean p50 p90 p99 max");
+        for (int stage = 0; stage < STAGE_COUNT; stage++) {
+            long count = getCount(stage);
+            if (count == 0) {
+                continue;
+            }
+            writer.println("  " + STAGE_NAMES[stage] + ": " + count +
+                    " " + toMillis(mTotalNanos[stage] / count) +
+                    " " + toMillis(getPercentileNanos(stage, 50)) +
+                    " " + toMillis(getPercentileNanos(stage, 90)) +
+                    " " + toMillis(getPercentileNanos(stage, 99)) +
+                    " " + toMillis(mMaxNanos[stage]));
+        }
+
+        int kept = (int) Math.min(mSpans, RING_SIZE);
+        writer.println("Last " + kept + " spans (end, stage, ms):");
+        for (long i = mSpans - kept; i < mSpans; i++) {
+            int slot = (int) (i % RING_SIZE);
+            writer.println("  " + mRingEndMillis[slot] + " " + STAGE_NAMES[mRingStages[slot]] +
+                    " " + toMillis(mRingNanos[slot]));
+        }
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format("%.1f", nanos / 1000000.0);
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.wearable.DataApi;
+import com.google.android.gms.wearable.PutDataRequest;
+import com.google.android.gms.wearable.Wearable;
+
+import java.util.ArrayList;
+
+/**
+ * Process-wide {@link GoogleApiClient} for the Wearable API.
+ * <p/>
+ * The client is connected lazily and shared by everybody who talks to the watch.  Requests made
+ * before the connection is up are queued and sent from {@link #onConnected}.  Callers that are
+ * about to send something can {@link #acquire()} the connection early so the handshake overlaps
+ * with their own work.  Once nobody holds a reference and no request is in flight the client is
+ * disconnected after {@link #IDLE_TIMEOUT_MS}.
+ */
+public class WearableClientManager implements GoogleApiClient.ConnectionCallbacks,
+        GoogleApiClient.OnConnectionFailedListener {
+    private static final String LOG_TAG = WearableClientManager.class.getSimpleName();
+
+    // Keep the connection around for a while, a sync usually sends more than once in a row
+    static final long IDLE_TIMEOUT_MS = 30 * 1000;
+
+    private static WearableClientManager sInstance;
+
+    private final GoogleApiClient mClient;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ArrayList<PendingPut> mPending = new ArrayList<PendingPut>();
+
+    // References held through acquire() plus requests that are queued or in flight
+    private int mRefCount;
+    private boolean mConnecting;
+
+    private final Runnable mIdleDisconnect = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (WearableClientManager.this) {
+                if (mRefCount == 0 && (mClient.isConnected() || mClient.isConnecting())) {
+                    Log.v(LOG_TAG, "Disconnecting idle Google API client");
+                    mConnecting = false;
+                    mClient.disconnect();
+                }
+            }
+        }
+    };
+
+    /**
+     * Told whether a request made through {@link #putDataItem} reached the Data API.
+     */
+    public interface PutCallback {
+        void onResult(boolean success);
+    }
+
+    private static class PendingPut {
+        final PutDataRequest request;
+        final PutCallback callback;
+
+        PendingPut(PutDataRequest request, PutCallback callback) {
+            this.request = request;
+            this.callback = callback;
+        }
+    }
+
+    public static synchronized WearableClientManager getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WearableClientManager(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private WearableClientManager(Context context) {
+        mClient = new GoogleApiClient.Builder(context)
+                .addApi(Wearable.API)
+                .addConnectionCallbacks(this)
+                .addOnConnectionFailedListener(this)
+                .build();
+    }
+
+    /**
+     * Keeps the client connected, connecting it if needed, until {@link #release()} is called.
+     */
+    public synchronized void acquire() {
+        mRefCount++;
+        mHandler.removeCallbacks(mIdleDisconnect);
+        connectIfNeeded();
+    }
+
+    /**
+     * Drops a reference taken with {@link #acquire()}.
+     */
+    public synchronized void release() {
+        if (mRefCount <= 0) {
+            throw new IllegalStateException("release() without acquire()");
+        }
+        if (--mRefCount == 0) {
+            mHandler.postDelayed(mIdleDisconnect, IDLE_TIMEOUT_MS);
+        }
+    }
+
+    /**
+     * Puts a data item once the client is connected.  The callback, which may be null, is also
+     * told when the connection could not be established.
+     */
+    public synchronized void putDataItem(PutDataRequest request, PutCallback callback) {
+        acquire();
+        PendingPut put = new PendingPut(request, callback);
+        if (mClient.isConnected()) {
+            send(put);
+        } else {
+            mPending.add(put);
+        }
+    }
+
+    private void connectIfNeeded() {
+        if (!mConnecting && !mClient.isConnected() && !mClient.isConnecting()) {
+            mConnecting = true;
+            mClient.connect();
+        }
+    }
+
+    private void send(final PendingPut put) {
+        Wearable.DataApi.putDataItem(mClient, put.request).setResultCallback(
+                new ResultCallback<DataApi.DataItemResult>() {
+                    @Override
+                    public void onResult(DataApi.DataItemResult dataItemResult) {
+                        try {
+                            if (put.callback != null) {
+                                put.callback.onResult(dataItemResult.getStatus().isSuccess());
+                            }
+                        } finally {
+                            release();
+                        }
+                    }
+                });
+    }
+
+    @Override
+    public synchronized void onConnected(Bundle bundle) {
+        Log.v(LOG_TAG, "Google API Client was connected");
+        mConnecting = false;
+        for (PendingPut put : mPending) {
+            send(put);
+        }
+        mPending.clear();
+    }
+
+    @Override
+    public void onConnectionSuspended(int i) {
+        // The client reconnects on its own; queued requests go out once it is back.
+        Log.v(LOG_TAG, "Connection to Google API client was suspended");
+    }
+
+    @Override
+    public synchronized void onConnectionFailed(ConnectionResult result) {
+        Log.e(LOG_TAG, "Connection to Google API client has failed: " + result);
+        mConnecting = false;
+
+        // Nothing queued will make it out, tell the senders instead of dropping silently.
+        ArrayList<PendingPut> failed = new ArrayList<PendingPut>(mPending);
+        mPending.clear();
+        for (PendingPut put : failed) {
+            try {
+                if (put.callback != null) {
+                    put.callback.onResult(false);
+                }
+            } finally {
+                release();
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.benchmarks;
+
+import com.example.android.sunshine.common.ClockText;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The text work the watch face does for every frame, advancing the clock half a second per
+ * call like the interactive mode timer does.  Drawing itself needs a device.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClockTextBenchmark {
+
+    // 2015-07-14 10:00:00 UTC
+    private static final long START = 1436868000000L;
+    private static final long FRAME_MILLIS = 500;
+
+    private final ClockText mClockText = new ClockText();
+    private Calendar mCalendar;
+    private SimpleDateFormat mDateFormat;
+    private long mTime;
+
+    @Setup
+    public void setUp() {
+        mCalendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"), Locale.US);
+        mDateFormat = new SimpleDateFormat("EEE, MMM d yyyy", Locale.US);
+        mDateFormat.setCalendar(mCalendar);
+        mTime = START;
+    }
+
+    @Benchmark
+    public int frame() {
+        mTime += FRAME_MILLIS;
+        mCalendar.setTimeInMillis(mTime);
+        mClockText.setTime(mCalendar.get(Calendar.HOUR_OF_DAY), mCalendar.get(Calendar.MINUTE));
+        mClockText.updateDate(mCalendar, mDateFormat);
+        return mClockText.dateLength;
+    }
+
+    @Benchmark
+    public String legacyFrame() {
+        mTime += FRAME_MILLIS;
+        mCalendar.setTimeInMillis(mTime);
+        String hours = String.format("%02d:", mCalendar.get(Calendar.HOUR_OF_DAY));
+        String minutes = String.format("%02d", mCalendar.get(Calendar.MINUTE));
+        String date = mDateFormat.format(mCalendar.getTime()).toUpperCase();
+        return hours + minutes + date;
+    }
+}
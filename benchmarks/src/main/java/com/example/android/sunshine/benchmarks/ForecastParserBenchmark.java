@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.benchmarks;
+
+import com.example.android.sunshine.common.ForecastJsonParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a forecast response the way a sync does: decoding UTF-8 bytes off a stream and
+ * handing every day to a callback.  The callback only consumes the values, so this measures the
+ * parser and not the database rows built from it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ForecastParserBenchmark {
+
+    @Param({Payloads.FORECAST_14_DAYS, Payloads.FORECAST_120_DAYS})
+    public String payload;
+
+    private byte[] mResponse;
+    private ForecastJsonParser mParser;
+
+    @Setup
+    public void setUp() throws IOException {
+        mResponse = Payloads.load(payload);
+        mParser = new ForecastJsonParser();
+    }
+
+    @Benchmark
+    public int parse(final Blackhole blackhole)
+            throws IOException, ForecastJsonParser.MalformedForecastException {
+        InputStreamReader reader =
+                new InputStreamReader(new ByteArrayInputStream(mResponse), "UTF-8");
+        return mParser.parse(reader, new ForecastJsonParser.Callback() {
+            @Override
+            public void onCity(String cityName, double lat, double lon) {
+                blackhole.consume(cityName);
+                blackhole.consume(lat);
+                blackhole.consume(lon);
+            }
+
+            @Override
+            public void onDay(int dayIndex, double pressure, int humidity, double windSpeed,
+                              double windDirection, double high, double low, String description,
+                              int weatherId) {
+                blackhole.consume(pressure);
+                blackhole.consume(humidity);
+                blackhole.consume(windSpeed);
+                blackhole.consume(windDirection);
+                blackhole.consume(high);
+                blackhole.consume(low);
+                blackhole.consume(description);
+                blackhole.consume(weatherId);
+            }
+        });
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.benchmarks;
+
+import com.example.android.sunshine.common.DayFormatter;
+import com.example.android.sunshine.common.TemperatureFormatter;
+import com.example.android.sunshine.common.WindFormatter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The formatting done for every forecast list item: temperatures, the friendly day string and
+ * the wind.  The {@code legacy} benchmarks keep the code these replaced, as a baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormattingBenchmark {
+
+    // 2015-07-14 10:00:00 UTC
+    private static final long NOW = 1436868000000L;
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    private final char[] mText = new char[TemperatureFormatter.MAX_LENGTH];
+    private final DayFormatter mDayFormatter = new DayFormatter();
+
+    private double mTemperature = 21.37;
+    private short mFixedPoint = 214;
+    private float mWindSpeed = 14.2f;
+    private float mDegrees = 123.4f;
+    private long mDate = NOW + 3 * DAY_IN_MILLIS;
+    private long mLaterDate = NOW + 9 * DAY_IN_MILLIS;
+
+    @Benchmark
+    public String formatTemperature() {
+        return TemperatureFormatter.format(
+                TemperatureFormatter.toDisplayUnits(mTemperature, false));
+    }
+
+    @Benchmark
+    public int formatTemperatureIntoBuffer() {
+        return TemperatureFormatter.format(
+                TemperatureFormatter.toDisplayUnits(mTemperature, false), mText, 0);
+    }
+
+    @Benchmark
+    public int formatFixedPointIntoBuffer() {
+        return TemperatureFormatter.formatFixedPoint(mFixedPoint, false, mText, 0);
+    }
+
+    @Benchmark
+    public String legacyFormatTemperature() {
+        return String.format("%1.0f\u00B0", (mTemperature * 1.8) + 32);
+    }
+
+    @Benchmark
+    public String friendlyDayName() {
+        if (DayFormatter.getDaysBetween(NOW, mDate) < 7) {
+            return mDayFormatter.formatDayName(mDate);
+        }
+        return null;
+    }
+
+    @Benchmark
+    public String friendlyShortDate() {
+        if (DayFormatter.getDaysBetween(NOW, mLaterDate) >= 7) {
+            return mDayFormatter.formatShortDate(mLaterDate);
+        }
+        return null;
+    }
+
+    @Benchmark
+    public String legacyFriendlyShortDate() {
+        return new SimpleDateFormat("EEE MMM dd").format(mLaterDate);
+    }
+
+    @Benchmark
+    public String formattedWind() {
+        return String.format(Locale.US, "%1$1.0f km/h %2$s",
+                WindFormatter.toDisplayUnits(mWindSpeed, true),
+                WindFormatter.getCompassDirection(mDegrees));
+    }
+
+    @Benchmark
+    public String windDirection() {
+        return WindFormatter.getCompassDirection(mDegrees);
+    }
+}
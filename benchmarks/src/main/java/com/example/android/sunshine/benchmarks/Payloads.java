@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Recorded OpenWeatherMap daily forecast responses, bundled as resources.
+ */
+public final class Payloads {
+
+    /**
+     * A regular sync, which asks for 14 days.
+     */
+    public static final String FORECAST_14_DAYS = "forecast_14_days.json";
+
+    /**
+     * Far more days than the API returns, to see how parsing scales with the response size.
+     */
+    public static final String FORECAST_120_DAYS = "forecast_120_days.json";
+
+    private Payloads() {
+    }
+
+    public static byte[] load(String name) throws IOException {
+        InputStream in = Payloads.class.getResourceAsStream("/forecast/" + name);
+        if (in == null) {
+            throw new IOException("No payload named " + name);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
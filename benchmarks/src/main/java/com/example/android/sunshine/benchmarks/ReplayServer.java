@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local stand-in for the OpenWeatherMap forecast endpoint.  Every request, whatever its query,
+ * is answered with a recorded payload after a configurable delay, and a configurable share of
+ * requests fails.  Syncs can be load-tested against it with no network:
+ * <pre>
+ *   ./gradlew :benchmarks:replayServer -PreplayLatencyMs=200 -PreplayErrorRate=0.05
+ *   ./gradlew :app:connectedAndroidTest \
+ *       -PforecastBaseUrl=http://10.0.2.2:8080/data/2.5/forecast/daily?
+ * </pre>
+ * Responses are gzipped when the client accepts it.  With ETags turned on, a request carrying
+ * the ETag of the payload is answered 304.
+ */
+public class ReplayServer {
+
+    public static final String PATH = "/data/2.5/forecast/daily";
+
+    private final HttpServer mServer;
+    private final ExecutorService mExecutor;
+    private final byte[] mBody;
+    private final byte[] mGzippedBody;
+    private final String mEtag;
+    private final Config mConfig;
+    private final Random mRandom;
+    private final AtomicLong mRequests = new AtomicLong();
+
+    /**
+     * How the server behaves.  Fields can be changed until the server is started.
+     */
+    public static class Config {
+        // 0 picks a free port
+        public int port;
+        public String payload = Payloads.FORECAST_14_DAYS;
+        public long latencyMs;
+        // share of requests answered 503, from 0 to 1
+        public double errorRate;
+        public boolean etags;
+        // threads answering requests, so slow responses overlap like on a real server
+        public int threads = 16;
+        // seeds the error picks, so runs fail the same requests
+        public long seed = 1;
+    }
+
+    public ReplayServer(Config config) throws IOException {
+        mConfig = config;
+        mRandom = new Random(config.seed);
+        mBody = Payloads.load(config.payload);
+        mGzippedBody = gzip(mBody);
+        mEtag = "\"" + hex(sha1(mBody)) + "\"";
+
+        mServer = HttpServer.create(new InetSocketAddress(config.port), 0);
+        mExecutor = Executors.newFixedThreadPool(config.threads);
+        mServer.setExecutor(mExecutor);
+        mServer.createContext(PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    respond(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+    }
+
+    public void start() {
+        mServer.start();
+    }
+
+    public void stop() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    public int getPort() {
+        return mServer.getAddress().getPort();
+    }
+
+    /**
+     * What to use as the forecast base URL to talk to this server from the same machine.
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + getPort() + PATH + "?";
+    }
+
+    public long getRequestCount() {
+        return mRequests.get();
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        mRequests.incrementAndGet();
+        if (mConfig.latencyMs > 0) {
+            try {
+                Thread.sleep(mConfig.latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        boolean fail;
+        synchronized (mRandom) {
+            fail = mRandom.nextDouble() < mConfig.errorRate;
+        }
+        if (fail) {
+            exchange.sendResponseHeaders(503, -1);
+            return;
+        }
+
+        if (mConfig.etags) {
+            exchange.getResponseHeaders().set("ETag", mEtag);
+            if (mEtag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+        }
+
+        byte[] body = mBody;
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            body = mGzippedBody;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GZIPOutputStream out = new GZIPOutputStream(bytes);
+        out.write(data);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] sha1(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16))
+                    .append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Runs the server until the process is killed.  Arguments are
+     * {@code [port] [payload] [latencyMs] [errorRate] [etags]}.
+     */
+    public static void main(String[] args) throws IOException {
+        Config config = new Config();
+        config.port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        if (args.length > 1) {
+            config.payload = args[1];
+        }
+        if (args.length > 2) {
+            config.latencyMs = Long.parseLong(args[2]);
+        }
+        if (args.length > 3) {
+            config.errorRate = Double.parseDouble(args[3]);
+        }
+        if (args.length > 4) {
+            config.etags = Boolean.parseBoolean(args[4]);
+        }
+        ReplayServer server = new ReplayServer(config);
+        server.start();
+        System.out.println("Replaying " + config.payload + " at " + server.getBaseUrl() +
+                ", " + config.latencyMs + " ms latency, " + config.errorRate + " error rate");
+    }
+}
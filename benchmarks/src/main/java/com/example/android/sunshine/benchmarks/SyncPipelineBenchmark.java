@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.benchmarks;
+
+import com.example.android.sunshine.common.ForecastJsonParser;
+import com.example.android.sunshine.common.TeeInputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The network half of a sync against a {@link ReplayServer} on localhost: a gzipped request,
+ * and the body decompressed, hashed, copied gzipped to a cache file and parsed as it streams
+ * in, the way the app's ForecastFetcher does.
+ * Sample time mode reports the latency percentiles, throughput mode the syncs per second.
+ * <p/>
+ * Storing the rows needs Android; the instrumentation test TestSyncEndToEnd drives the
+ * whole sync adapter against the same server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.SampleTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SyncPipelineBenchmark {
+
+    @Param({Payloads.FORECAST_14_DAYS, Payloads.FORECAST_120_DAYS})
+    public String payload;
+
+    @Param({"0", "20"})
+    public long latencyMs;
+
+    private ReplayServer mServer;
+    private URL mUrl;
+
+    @State(Scope.Thread)
+    public static class Fetcher {
+        final ForecastJsonParser parser = new ForecastJsonParser();
+        final byte[] buffer = new byte[4096];
+        // stands in for the app's ForecastCache entry
+        File cacheFile;
+        int days;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            cacheFile = File.createTempFile("forecast", ".gz");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            cacheFile.delete();
+        }
+
+        final ForecastJsonParser.Callback callback = new ForecastJsonParser.Callback() {
+            @Override
+            public void onCity(String cityName, double lat, double lon) {
+            }
+
+            @Override
+            public void onDay(int dayIndex, double pressure, int humidity, double windSpeed,
+                              double windDirection, double high, double low, String description,
+                              int weatherId) {
+                days++;
+            }
+        };
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ReplayServer.Config config = new ReplayServer.Config();
+        config.payload = payload;
+        config.latencyMs = latencyMs;
+        mServer = new ReplayServer(config);
+        mServer.start();
+        mUrl = new URL(mServer.getBaseUrl() + "q=" + URLEncoder.encode("94043", "UTF-8") +
+                "&mode=json&units=metric&cnt=14");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mServer.stop();
+    }
+
+    @Benchmark
+    public int sync(Fetcher fetcher)
+            throws IOException, ForecastJsonParser.MalformedForecastException {
+        HttpURLConnection connection = (HttpURLConnection) mUrl.openConnection();
+        try {
+            connection.setRequestProperty("Accept-Encoding", "gzip, deflate");
+            connection.setUseCaches(false);
+            InputStream in = connection.getInputStream();
+            if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+                in = new GZIPInputStream(in);
+            }
+            DigestInputStream digest = new DigestInputStream(in, newDigest());
+            OutputStream cache = new GZIPOutputStream(new FileOutputStream(fetcher.cacheFile));
+            InputStream source = new TeeInputStream(digest, cache);
+            try {
+                fetcher.days = 0;
+                fetcher.parser.parse(new InputStreamReader(source, "UTF-8"), fetcher.callback);
+                // the hash and the copy cover the whole body
+                while (source.read(fetcher.buffer) != -1) {
+                    // only the bytes passing by matter
+                }
+                digest.getMessageDigest().digest();
+            } finally {
+                in.close();
+                cache.close();
+            }
+            return fetcher.days;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.common;
+
+import java.text.DateFormat;
+import java.util.Calendar;
+
+/**
+ * Text drawn by the watch face, kept in preallocated char buffers so that formatting
+ * a frame allocates nothing.  The date is only re-formatted when the day changes.
+ */
+public class ClockText {
+
+    public static final char COLON = ':';
+
+    /**
+     * "00" to "99", preformatted.
+     */
+    public static final char[][] TWO_DIGITS = new char[100][];
+
+    static {
+        for (int i = 0; i < TWO_DIGITS.length; i++) {
+            TWO_DIGITS[i] = new char[]{(char) ('0' + i / 10), (char) ('0' + i % 10)};
+        }
+    }
+
+    /**
+     * Hours followed by a colon.  Draw {@link #HOURS_LENGTH} chars to leave the colon out.
+     */
+    public final char[] hours = new char[]{'0', '0', COLON};
+    public static final int HOURS_LENGTH = 2;
+    public static final int HOURS_WITH_COLON_LENGTH = 3;
+
+    public final char[] minutes = new char[]{'0', '0'};
+    public static final int MINUTES_LENGTH = 2;
+
+    public char[] date = new char[32];
+    public int dateLength;
+
+    private int mDateKey = -1;
+
+    public void setTime(int hourOfDay, int minute) {
+        char[] digits = TWO_DIGITS[hourOfDay];
+        hours[0] = digits[0];
+        hours[1] = digits[1];
+        digits = TWO_DIGITS[minute];
+        minutes[0] = digits[0];
+        minutes[1] = digits[1];
+    }
+
+    /**
+     * Re-formats the date if the calendar moved to another day since the last call.
+     *
+     * @return true if {@link #date} changed
+     */
+    public boolean updateDate(Calendar calendar, DateFormat dateFormat) {
+        int dateKey = calendar.get(Calendar.YEAR) * 400 + calendar.get(Calendar.DAY_OF_YEAR);
+        if (dateKey == mDateKey) {
+            return false;
+        }
+        mDateKey = dateKey;
+
+        String text = dateFormat.format(calendar.getTime()).toUpperCase();
+        dateLength = text.length();
+        if (date.length < dateLength) {
+            date = new char[dateLength];
+        }
+        text.getChars(0, dateLength, date, 0);
+        return true;
+    }
+
+    /**
+     * Forces the date to be re-formatted on the next {@link #updateDate} call, e.g. after the
+     * time zone or the format changed.
+     */
+    public void invalidateDate() {
+        mDateKey = -1;
+    }
+}
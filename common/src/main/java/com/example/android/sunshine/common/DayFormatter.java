@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.common;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * The locale dependent parts of the friendly day strings shown in the forecast list.
+ * <p/>
+ * Creating a {@link SimpleDateFormat} parses its pattern and loads locale data, which used to
+ * happen for every list item bound.  The formats are kept here instead and only rebuilt when the
+ * default locale or time zone changes.  Not thread safe, use one instance per thread.
+ */
+public class DayFormatter {
+
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    private Locale mLocale;
+    private String mTimeZoneId;
+    private SimpleDateFormat mDayNameFormat;
+    private SimpleDateFormat mMonthDayFormat;
+    private SimpleDateFormat mShortDateFormat;
+    private final Date mDate = new Date();
+
+    /**
+     * Days from the local day of {@code nowInMillis} to the local day of {@code dateInMillis},
+     * both taken with the current offset from UTC.
+     */
+    public static int getDaysBetween(long nowInMillis, long dateInMillis) {
+        int offset = TimeZone.getDefault().getOffset(nowInMillis);
+        return (int) ((dateInMillis + offset) / DAY_IN_MILLIS)
+                - (int) ((nowInMillis + offset) / DAY_IN_MILLIS);
+    }
+
+    /**
+     * @return the day of the week, e.g "Wednesday"
+     */
+    public String formatDayName(long dateInMillis) {
+        ensureFormats();
+        return format(mDayNameFormat, dateInMillis);
+    }
+
+    /**
+     * @return the day in the form "December 06"
+     */
+    public String formatMonthDay(long dateInMillis) {
+        ensureFormats();
+        return format(mMonthDayFormat, dateInMillis);
+    }
+
+    /**
+     * @return the day in the form "Mon Jun 03"
+     */
+    public String formatShortDate(long dateInMillis) {
+        ensureFormats();
+        return format(mShortDateFormat, dateInMillis);
+    }
+
+    private String format(SimpleDateFormat format, long dateInMillis) {
+        mDate.setTime(dateInMillis);
+        return format.format(mDate);
+    }
+
+    private void ensureFormats() {
+        Locale locale = Locale.getDefault();
+        String timeZoneId = TimeZone.getDefault().getID();
+        if (locale.equals(mLocale) && timeZoneId.equals(mTimeZoneId)) {
+            return;
+        }
+        mLocale = locale;
+        mTimeZoneId = timeZoneId;
+        mDayNameFormat = new SimpleDateFormat("EEEE", locale);
+        mMonthDayFormat = new SimpleDateFormat("MMMM dd", locale);
+        mShortDateFormat = new SimpleDateFormat("EEE MMM dd", locale);
+    }
+}
@@ -0,0 +1,655 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.common;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Pull parser for the OpenWeatherMap daily forecast response.
+ * <p/>
+ * The response is read straight off the network stream through a fixed char buffer and every
+ * day is handed to a {@link Callback} as primitives, so a sync never holds the payload as a
+ * String nor builds an object tree for it.  Only the city name and the short descriptions are
+ * materialized as Strings, and identical descriptions share one instance.
+ * <p/>
+ * Instances keep their buffers between calls and are not thread safe.
+ */
+public class ForecastJsonParser {
+
+    /**
+     * Returned by {@link #parse} when the stream was empty.
+     */
+    public static final int EMPTY_RESPONSE = -1;
+
+    /**
+     * Receives the parsed forecast.  Days are reported in the order they appear in the response.
+     */
+    public interface Callback {
+        void onCity(String cityName, double lat, double lon);
+
+        void onDay(int dayIndex, double pressure, int humidity, double windSpeed,
+                   double windDirection, double high, double low, String description,
+                   int weatherId);
+    }
+
+    /**
+     * Thrown when the response is not well-formed JSON or misses a field we need.
+     */
+    public static class MalformedForecastException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        public MalformedForecastException(String message) {
+            super(message);
+        }
+    }
+
+    // These are the names of the JSON objects that need to be extracted.
+
+    // Location information
+    private static final String OWM_CITY = "city";
+    private static final String OWM_CITY_NAME = "name";
+    private static final String OWM_COORD = "coord";
+
+    // Location coordinate
+    private static final String OWM_LATITUDE = "lat";
+    private static final String OWM_LONGITUDE = "lon";
+
+    // Weather information.  Each day's forecast info is an element of the "list" array.
+    private static final String OWM_LIST = "list";
+
+    private static final String OWM_PRESSURE = "pressure";
+    private static final String OWM_HUMIDITY = "humidity";
+    private static final String OWM_WINDSPEED = "speed";
+    private static final String OWM_WIND_DIRECTION = "deg";
+
+    // All temperatures are children of the "temp" object.
+    private static final String OWM_TEMPERATURE = "temp";
+    private static final String OWM_MAX = "max";
+    private static final String OWM_MIN = "min";
+
+    private static final String OWM_WEATHER = "weather";
+    private static final String OWM_DESCRIPTION = "main";
+    private static final String OWM_WEATHER_ID = "id";
+
+    private static final String OWM_MESSAGE_CODE = "cod";
+
+    // Bits tracking which fields of a day have been seen
+    private static final int DAY_PRESSURE = 1;
+    private static final int DAY_HUMIDITY = 1 << 1;
+    private static final int DAY_WINDSPEED = 1 << 2;
+    private static final int DAY_WIND_DIRECTION = 1 << 3;
+    private static final int DAY_MAX = 1 << 4;
+    private static final int DAY_MIN = 1 << 5;
+    private static final int DAY_DESCRIPTION = 1 << 6;
+    private static final int DAY_WEATHER_ID = 1 << 7;
+    private static final int DAY_ALL = (1 << 8) - 1;
+
+    private static final int HTTP_OK = 200;
+
+    // Exactly representable powers of ten, used by the fast number path
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // Descriptions come from a small fixed vocabulary ("Clear", "Rain", ...)
+    private static final int DESCRIPTION_CACHE_SIZE = 16;
+
+    private final char[] mBuffer = new char[4096];
+    private final StringBuilder mScratch = new StringBuilder(64);
+    private final String[] mDescriptions = new String[DESCRIPTION_CACHE_SIZE];
+    private int mDescriptionCount;
+
+    private Reader mReader;
+    private int mPos;
+    private int mLimit;
+
+    // Per-document state
+    private boolean mHasCity;
+    private boolean mHasList;
+    private String mCityName;
+    private double mCityLat;
+    private double mCityLon;
+
+    // Per-day state
+    private int mDayFields;
+    private double mPressure;
+    private int mHumidity;
+    private double mWindSpeed;
+    private double mWindDirection;
+    private double mHigh;
+    private double mLow;
+    private String mDescription;
+    private int mWeatherId;
+
+    /**
+     * Parses one forecast response.  The reader is consumed but not closed.
+     *
+     * @param reader   the response body
+     * @param callback receives the city and each day
+     * @return the OpenWeatherMap message code, {@code 200} when the response carries none, or
+     * {@link #EMPTY_RESPONSE} when the stream was empty.  When the code is not {@code 200} the
+     * callback may not have been called at all.
+     */
+    public int parse(Reader reader, Callback callback)
+            throws IOException, MalformedForecastException {
+        mReader = reader;
+        mPos = 0;
+        mLimit = 0;
+        mHasCity = false;
+        mHasList = false;
+        mCityName = null;
+
+        try {
+            if (!fillUntilNonWhitespace()) {
+                return EMPTY_RESPONSE;
+            }
+
+            int messageCode = HTTP_OK;
+            beginObject();
+            while (nextMember()) {
+                if (nameEquals(OWM_MESSAGE_CODE)) {
+                    messageCode = (int) readDouble();
+                } else if (nameEquals(OWM_CITY)) {
+                    readCity();
+                } else if (nameEquals(OWM_LIST)) {
+                    readList(callback);
+                } else {
+                    skipValue();
+                }
+            }
+
+            if (messageCode != HTTP_OK) {
+                return messageCode;
+            }
+            if (!mHasList) {
+                throw new MalformedForecastException("No value for " + OWM_LIST);
+            }
+            if (!mHasCity) {
+                throw new MalformedForecastException("No value for " + OWM_CITY);
+            }
+            callback.onCity(mCityName, mCityLat, mCityLon);
+            return messageCode;
+        } finally {
+            mReader = null;
+        }
+    }
+
+    private void readCity() throws IOException, MalformedForecastException {
+        boolean hasName = false;
+        boolean hasLat = false;
+        boolean hasLon = false;
+
+        beginObject();
+        while (nextMember()) {
+            if (nameEquals(OWM_CITY_NAME)) {
+                readString();
+                mCityName = mScratch.toString();
+                hasName = true;
+            } else if (nameEquals(OWM_COORD)) {
+                beginObject();
+                while (nextMember()) {
+                    if (nameEquals(OWM_LATITUDE)) {
+                        mCityLat = readDouble();
+                        hasLat = true;
+                    } else if (nameEquals(OWM_LONGITUDE)) {
+                        mCityLon = readDouble();
+                        hasLon = true;
+                    } else {
+                        skipValue();
+                    }
+                }
+            } else {
+                skipValue();
+            }
+        }
+
+        if (!hasName || !hasLat || !hasLon) {
+            throw new MalformedForecastException("Incomplete " + OWM_CITY);
+        }
+        mHasCity = true;
+    }
+
+    private void readList(Callback callback) throws IOException, MalformedForecastException {
+        int dayIndex = 0;
+        beginArray();
+        while (nextElement()) {
+            readDay();
+            callback.onDay(dayIndex++, mPressure, mHumidity, mWindSpeed, mWindDirection,
+                    mHigh, mLow, mDescription, mWeatherId);
+        }
+        mHasList = true;
+    }
+
+    private void readDay() throws IOException, MalformedForecastException {
+        mDayFields = 0;
+        beginObject();
+        while (nextMember()) {
+            if (nameEquals(OWM_PRESSURE)) {
+                mPressure = readDouble();
+                mDayFields |= DAY_PRESSURE;
+            } else if (nameEquals(OWM_HUMIDITY)) {
+                mHumidity = (int) readDouble();
+                mDayFields |= DAY_HUMIDITY;
+            } else if (nameEquals(OWM_WINDSPEED)) {
+                mWindSpeed = readDouble();
+                mDayFields |= DAY_WINDSPEED;
+            } else if (nameEquals(OWM_WIND_DIRECTION)) {
+                mWindDirection = readDouble();
+                mDayFields |= DAY_WIND_DIRECTION;
+            } else if (nameEquals(OWM_TEMPERATURE)) {
+                readTemperature();
+            } else if (nameEquals(OWM_WEATHER)) {
+                readWeather();
+            } else {
+                skipValue();
+            }
+        }
+
+        if (mDayFields != DAY_ALL) {
+            throw new MalformedForecastException("Incomplete day in " + OWM_LIST);
+        }
+    }
+
+    private void readTemperature() throws IOException, MalformedForecastException {
+        beginObject();
+        while (nextMember()) {
+            if (nameEquals(OWM_MAX)) {
+                mHigh = readDouble();
+                mDayFields |= DAY_MAX;
+            } else if (nameEquals(OWM_MIN)) {
+                mLow = readDouble();
+                mDayFields |= DAY_MIN;
+            } else {
+                skipValue();
+            }
+        }
+    }
+
+    private void readWeather() throws IOException, MalformedForecastException {
+        // Description is in a child array called "weather", which is 1 element long.
+        // That element also contains a weather code.
+        beginArray();
+        boolean first = true;
+        while (nextElement()) {
+            if (!first) {
+                skipValue();
+                continue;
+            }
+            first = false;
+            beginObject();
+            while (nextMember()) {
+                if (nameEquals(OWM_DESCRIPTION)) {
+                    readString();
+                    mDescription = sharedDescription();
+                    mDayFields |= DAY_DESCRIPTION;
+                } else if (nameEquals(OWM_WEATHER_ID)) {
+                    mWeatherId = (int) readDouble();
+                    mDayFields |= DAY_WEATHER_ID;
+                } else {
+                    skipValue();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a String equal to the scratch buffer, reusing one handed out earlier if possible.
+     */
+    private String sharedDescription() {
+        for (int i = 0; i < mDescriptionCount; i++) {
+            if (contentEquals(mScratch, mDescriptions[i])) {
+                return mDescriptions[i];
+            }
+        }
+        String description = mScratch.toString();
+        if (mDescriptionCount < DESCRIPTION_CACHE_SIZE) {
+            mDescriptions[mDescriptionCount++] = description;
+        }
+        return description;
+    }
+
+    // Tokenizer
+
+    private void beginObject() throws IOException, MalformedForecastException {
+        if (nextNonWhitespace() != '{') {
+            throw syntaxError("Expected an object");
+        }
+    }
+
+    private void beginArray() throws IOException, MalformedForecastException {
+        if (nextNonWhitespace() != '[') {
+            throw syntaxError("Expected an array");
+        }
+    }
+
+    /**
+     * Advances to the next member of the current object and leaves its name in the scratch
+     * buffer.  Returns false once the object has been closed.
+     */
+    private boolean nextMember() throws IOException, MalformedForecastException {
+        int c = nextNonWhitespace();
+        if (c == ',') {
+            c = nextNonWhitespace();
+        }
+        if (c == '}') {
+            return false;
+        }
+        if (c != '"') {
+            throw syntaxError("Expected a name");
+        }
+        readStringBody();
+        if (nextNonWhitespace() != ':') {
+            throw syntaxError("Expected ':'");
+        }
+        return true;
+    }
+
+    /**
+     * Advances to the next element of the current array.  Returns false once the array has
+     * been closed.
+     */
+    private boolean nextElement() throws IOException, MalformedForecastException {
+        int c = peekNonWhitespace();
+        if (c == ',') {
+            mPos++;
+            c = peekNonWhitespace();
+        }
+        if (c == ']') {
+            mPos++;
+            return false;
+        }
+        return true;
+    }
+
+    private boolean nameEquals(String name) {
+        return contentEquals(mScratch, name);
+    }
+
+    private static boolean contentEquals(StringBuilder builder, String s) {
+        int length = builder.length();
+        if (length != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (builder.charAt(i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void readString() throws IOException, MalformedForecastException {
+        if (nextNonWhitespace() != '"') {
+            throw syntaxError("Expected a string");
+        }
+        readStringBody();
+    }
+
+    /**
+     * Reads the rest of a string whose opening quote was consumed into the scratch buffer.
+     */
+    private void readStringBody() throws IOException, MalformedForecastException {
+        StringBuilder out = mScratch;
+        out.setLength(0);
+        while (true) {
+            if (mPos == mLimit && !fill()) {
+                throw syntaxError("Unterminated string");
+            }
+            char c = mBuffer[mPos++];
+            if (c == '"') {
+                return;
+            }
+            if (c != '\\') {
+                out.append(c);
+                continue;
+            }
+            if (mPos == mLimit && !fill()) {
+                throw syntaxError("Unterminated escape sequence");
+            }
+            char escaped = mBuffer[mPos++];
+            switch (escaped) {
+                case 'b':
+                    out.append('\b');
+                    break;
+                case 'f':
+                    out.append('\f');
+                    break;
+                case 'n':
+                    out.append('\n');
+                    break;
+                case 'r':
+                    out.append('\r');
+                    break;
+                case 't':
+                    out.append('\t');
+                    break;
+                case 'u':
+                    out.append(readUnicodeEscape());
+                    break;
+                default:
+                    // '"', '\\' and '/' stand for themselves
+                    out.append(escaped);
+                    break;
+            }
+        }
+    }
+
+    private char readUnicodeEscape() throws IOException, MalformedForecastException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            if (mPos == mLimit && !fill()) {
+                throw syntaxError("Unterminated escape sequence");
+            }
+            int digit = Character.digit(mBuffer[mPos++], 16);
+            if (digit < 0) {
+                throw syntaxError("Malformed escape sequence");
+            }
+            value = (value << 4) | digit;
+        }
+        return (char) value;
+    }
+
+    /**
+     * Reads a number, accepting the quoted form OpenWeatherMap uses for some fields.
+     */
+    private double readDouble() throws IOException, MalformedForecastException {
+        int c = peekNonWhitespace();
+        if (c == '"') {
+            mPos++;
+            readStringBody();
+        } else {
+            readNumberLiteral();
+        }
+        return parseScratchAsDouble();
+    }
+
+    private void readNumberLiteral() throws IOException {
+        StringBuilder out = mScratch;
+        out.setLength(0);
+        while (mPos < mLimit || fill()) {
+            char c = mBuffer[mPos];
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                out.append(c);
+                mPos++;
+            } else {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Converts the scratch buffer to a double.  Values with at most 15 significant digits and a
+     * small exponent are computed exactly without allocating; anything else goes through
+     * {@link Double#parseDouble}.
+     */
+    private double parseScratchAsDouble() throws MalformedForecastException {
+        StringBuilder s = mScratch;
+        int length = s.length();
+        int i = 0;
+        boolean negative = false;
+        if (i < length && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        boolean sawDigit = false;
+        boolean fastPath = true;
+
+        for (; i < length && s.charAt(i) >= '0' && s.charAt(i) <= '9'; i++) {
+            sawDigit = true;
+            if (mantissa != 0 || s.charAt(i) != '0') {
+                mantissa = mantissa * 10 + (s.charAt(i) - '0');
+                if (++significantDigits > 15) fastPath = false;
+            }
+        }
+        if (i < length && s.charAt(i) == '.') {
+            i++;
+            for (; i < length && s.charAt(i) >= '0' && s.charAt(i) <= '9'; i++) {
+                sawDigit = true;
+                if (mantissa != 0 || s.charAt(i) != '0') {
+                    mantissa = mantissa * 10 + (s.charAt(i) - '0');
+                    if (++significantDigits > 15) fastPath = false;
+                }
+                exponent--;
+            }
+        }
+        if (!sawDigit) {
+            throw syntaxError("Expected a number");
+        }
+        if (i < length && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < length && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+                negativeExponent = s.charAt(i) == '-';
+                i++;
+            }
+            int explicitExponent = 0;
+            boolean sawExponentDigit = false;
+            for (; i < length && s.charAt(i) >= '0' && s.charAt(i) <= '9'; i++) {
+                sawExponentDigit = true;
+                if (explicitExponent < 1000) {
+                    explicitExponent = explicitExponent * 10 + (s.charAt(i) - '0');
+                }
+            }
+            if (!sawExponentDigit) {
+                throw syntaxError("Malformed number");
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (i != length) {
+            throw syntaxError("Malformed number");
+        }
+
+        if (fastPath && exponent >= -22 && exponent <= 22) {
+            double value = mantissa;
+            value = exponent < 0
+                    ? value / POWERS_OF_TEN[-exponent]
+                    : value * POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(s.toString());
+    }
+
+    private void skipValue() throws IOException, MalformedForecastException {
+        int c = peekNonWhitespace();
+        switch (c) {
+            case '{':
+                mPos++;
+                while (nextMember()) {
+                    skipValue();
+                }
+                break;
+            case '[':
+                mPos++;
+                while (nextElement()) {
+                    skipValue();
+                }
+                break;
+            case '"':
+                mPos++;
+                readStringBody();
+                break;
+            default:
+                // numbers and the true/false/null literals
+                skipLiteral();
+                break;
+        }
+    }
+
+    private void skipLiteral() throws IOException, MalformedForecastException {
+        boolean skipped = false;
+        while (mPos < mLimit || fill()) {
+            char c = mBuffer[mPos];
+            if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                break;
+            }
+            mPos++;
+            skipped = true;
+        }
+        if (!skipped) {
+            throw syntaxError("Expected a value");
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException, MalformedForecastException {
+        int c = peekNonWhitespace();
+        mPos++;
+        return c;
+    }
+
+    private int peekNonWhitespace() throws IOException, MalformedForecastException {
+        if (!fillUntilNonWhitespace()) {
+            throw syntaxError("Unexpected end of input");
+        }
+        return mBuffer[mPos];
+    }
+
+    /**
+     * Skips whitespace, refilling as needed.  Returns false at end of input.
+     */
+    private boolean fillUntilNonWhitespace() throws IOException {
+        while (mPos < mLimit || fill()) {
+            char c = mBuffer[mPos];
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                mPos++;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean fill() throws IOException {
+        int read = mReader.read(mBuffer, 0, mBuffer.length);
+        if (read <= 0) {
+            mPos = 0;
+            mLimit = 0;
+            return false;
+        }
+        mPos = 0;
+        mLimit = read;
+        return true;
+    }
+
+    private MalformedForecastException syntaxError(String message) {
+        return new MalformedForecastException(message);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.common;
+
+/**
+ * Formats temperatures as whole degrees followed by a {@link #DEGREE} sign.
+ * <p/>
+ * The output matches the {@code "%1.0f"} format the apps used before: halves round away from
+ * zero.  The one difference is that a temperature that rounds to zero never shows as "-0".
+ * The char[] variants write into a caller's buffer and allocate nothing.
+ */
+public final class TemperatureFormatter {
+
+    public static final char DEGREE = '\u00B0';
+
+    /**
+     * Temperatures are clamped to plus or minus this many degrees.
+     */
+    static final long MAX_DEGREES = 99999;
+
+    /**
+     * Buffer size that fits any formatted temperature: sign, five digits and the degree sign.
+     */
+    public static final int MAX_LENGTH = 7;
+
+    // What we show when the value is not a number.
+    private static final char[] NOT_A_NUMBER = {'-', '-', DEGREE};
+
+    private TemperatureFormatter() {
+    }
+
+    /**
+     * Data is stored in Celsius.  Converts it for a user that prefers Fahrenheit.
+     */
+    public static double toDisplayUnits(double celsius, boolean metric) {
+        return metric ? celsius : (celsius * 1.8) + 32;
+    }
+
+    /**
+     * Writes the temperature, already in the units to show, to {@code out}.
+     *
+     * @return the number of chars written, at most {@link #MAX_LENGTH}
+     */
+    public static int format(double temperature, char[] out, int offset) {
+        if (Double.isNaN(temperature)) {
+            System.arraycopy(NOT_A_NUMBER, 0, out, offset, NOT_A_NUMBER.length);
+            return NOT_A_NUMBER.length;
+        }
+        double magnitude = Math.min(Math.abs(temperature), MAX_DEGREES);
+        long degrees = (long) magnitude;
+        // exact for any magnitude we keep, unlike adding 0.5 first
+        if (magnitude - degrees >= 0.5) {
+            degrees++;
+        }
+        return write(temperature < 0, degrees, out, offset);
+    }
+
+    /**
+     * Writes a temperature given in the fixed point form of {@link WeatherPayload}, converted to
+     * the user's units, to {@code out}.  Uses integer arithmetic only.
+     *
+     * @return the number of chars written, at most {@link #MAX_LENGTH}
+     */
+    public static int formatFixedPoint(short tenthsCelsius, boolean metric, char[] out,
+                                       int offset) {
+        // hundredths of a degree in the units to show
+        long hundredths = metric ? tenthsCelsius * 10L : tenthsCelsius * 18L + 3200;
+        boolean negative = hundredths < 0;
+        long magnitude = Math.abs(hundredths);
+        return write(negative, Math.min((magnitude + 50) / 100, MAX_DEGREES), out, offset);
+    }
+
+    public static String format(double temperature) {
+        char[] text = new char[MAX_LENGTH];
+        return new String(text, 0, format(temperature, text, 0));
+    }
+
+    public static String formatFixedPoint(short tenthsCelsius, boolean metric) {
+        char[] text = new char[MAX_LENGTH];
+        return new String(text, 0, formatFixedPoint(tenthsCelsius, metric, text, 0));
+    }
+
+    private static int write(boolean negative, long degrees, char[] out, int offset) {
+        int digits = 1;
+        for (long rest = degrees / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        int length = (negative && degrees != 0 ? 1 : 0) + digits + 1;
+
+        int pos = offset + length;
+        out[--pos] = DEGREE;
+        long rest = degrees;
+        do {
+            out[--pos] = (char) ('0' + rest % 10);
+            rest /= 10;
+        } while (rest != 0);
+        if (pos > offset) {
+            out[--pos] = '-';
+        }
+        return length;
+    }
+}
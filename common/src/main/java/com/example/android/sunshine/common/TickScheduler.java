@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.common;
+
+/**
+ * When the watch face next has to draw something different.
+ * <p/>
+ * Between two such moments every frame would be the same, so the face sleeps until the next
+ * one instead of ticking at a fixed rate.  With blinking colons that is the next half second,
+ * when they toggle; without, it is the next minute, which also covers the date rolling over at
+ * midnight.  New weather doesn't need a tick, it invalidates the face when it arrives.
+ */
+public final class TickScheduler {
+
+    /**
+     * The colons are shown for the first half of each second and hidden for the second.
+     */
+    public static final long COLON_PHASE_MS = 500;
+
+    public static final long MINUTE_MS = 60 * 1000;
+
+    private TickScheduler() {
+    }
+
+    /**
+     * Whether blinking colons are shown at the given time.
+     */
+    public static boolean isColonVisible(long timeMs) {
+        return floorMod(timeMs, 2 * COLON_PHASE_MS) < COLON_PHASE_MS;
+    }
+
+    /**
+     * The first time after timeMs at which the drawn clock changes.
+     *
+     * @param zoneOffsetMs the offset of local time from UTC at timeMs, minutes change on local
+     *                     boundaries
+     * @param blinkColons  whether the colons blink, otherwise only the minute matters
+     */
+    public static long nextChange(long timeMs, int zoneOffsetMs, boolean blinkColons) {
+        long period = blinkColons ? COLON_PHASE_MS : MINUTE_MS;
+        long localMs = timeMs + zoneOffsetMs;
+        return localMs - floorMod(localMs, period) + period - zoneOffsetMs;
+    }
+
+    /**
+     * How long to sleep from timeMs until {@link #nextChange}.
+     */
+    public static long delayUntilNextChange(long timeMs, int zoneOffsetMs, boolean blinkColons) {
+        return nextChange(timeMs, zoneOffsetMs, blinkColons) - timeMs;
+    }
+
+    private static long floorMod(long x, long y) {
+        long mod = x % y;
+        return mod < 0 ? mod + y : mod;
+    }
+}
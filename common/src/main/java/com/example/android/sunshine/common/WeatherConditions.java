@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.common;
+
+/**
+ * Groups the OpenWeatherMap condition codes into the handful of conditions we have artwork for.
+ * <p/>
+ * The ranges are expanded into a table once, so a lookup is a bounds check and an array read.
+ * Each app maps the returned condition to its own drawables.
+ */
+public final class WeatherConditions {
+
+    public static final int UNKNOWN = 0;
+    public static final int STORM = 1;
+    public static final int LIGHT_RAIN = 2;
+    public static final int RAIN = 3;
+    public static final int SNOW = 4;
+    public static final int FOG = 5;
+    public static final int CLEAR = 6;
+    public static final int LIGHT_CLOUDS = 7;
+    public static final int CLOUDS = 8;
+
+    /**
+     * Number of conditions, for sizing tables indexed by condition.
+     */
+    public static final int COUNT = 9;
+
+    /**
+     * Names of the conditions as used by the art packs, indexed by condition.
+     */
+    private static final String[] ART_NAMES = {
+            null, "storm", "light_rain", "rain", "snow", "fog", "clear", "light_clouds", "clouds"
+    };
+
+    // Condition codes are three digits, the first one being the group.
+    private static final byte[] CONDITIONS = new byte[1000];
+
+    static {
+        // Based on weather code data found at:
+        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+        // Later ranges win where they overlap, so the order matters: 761 is fog.
+        fill(200, 232, STORM);
+        fill(300, 321, LIGHT_RAIN);
+        fill(500, 504, RAIN);
+        fill(511, 511, SNOW);
+        fill(520, 531, RAIN);
+        fill(600, 622, SNOW);
+        fill(781, 781, STORM);
+        fill(701, 761, FOG);
+        fill(800, 800, CLEAR);
+        fill(801, 801, LIGHT_CLOUDS);
+        fill(802, 804, CLOUDS);
+    }
+
+    private static void fill(int first, int last, int condition) {
+        for (int weatherId = first; weatherId <= last; weatherId++) {
+            CONDITIONS[weatherId] = (byte) condition;
+        }
+    }
+
+    private WeatherConditions() {
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return the condition, {@link #UNKNOWN} if no relation is found.
+     */
+    public static int getCondition(int weatherId) {
+        return weatherId >= 0 && weatherId < CONDITIONS.length ? CONDITIONS[weatherId] : UNKNOWN;
+    }
+
+    /**
+     * @return the art pack name of the condition, null for {@link #UNKNOWN}.
+     */
+    public static String getArtName(int condition) {
+        return ART_NAMES[condition];
+    }
+}
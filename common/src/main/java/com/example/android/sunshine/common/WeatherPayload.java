@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.common;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.TimeZone;
+
+/**
+ * The multi-day forecast sent from the phone to the watch, in a compact versioned binary form.
+ * <p/>
+ * Layout (big endian):
+ * <pre>
+ *   byte   version
+ *   byte   flags            FLAG_METRIC when the user wants Celsius
+ *   long   timestamp        when the forecast was synced, in milliseconds
+ *   int    firstDay         local days since the epoch of the first forecast day, see toDay
+ *   byte   dayCount
+ *   dayCount times:
+ *     short high            tenths of a degree Celsius
+ *     short low             tenths of a degree Celsius
+ *     short weatherId       OpenWeatherMap condition code
+ * </pre>
+ * A 14 day forecast takes 99 bytes.  The watch picks the icon for a condition code from its own
+ * resources, so no pixels are sent.
+ */
+public class WeatherPayload {
+
+    public static final String PATH = "/weather";
+    public static final String KEY = "weather_forecast_key";
+
+    public static final byte VERSION = 1;
+    public static final int FLAG_METRIC = 1;
+
+    public static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+    private static final int HEADER_SIZE = 1 + 1 + 8 + 4 + 1;
+    private static final int DAY_SIZE = 2 + 2 + 2;
+    public static final int MAX_DAYS = 127;
+
+    public final long timestamp;
+    public final int firstDay;
+    public final boolean metric;
+    public final short[] highs;
+    public final short[] lows;
+    public final short[] weatherIds;
+
+    public WeatherPayload(long timestamp, int firstDay, boolean metric,
+                          short[] highs, short[] lows, short[] weatherIds) {
+        if (highs.length != lows.length || highs.length != weatherIds.length
+                || highs.length > MAX_DAYS) {
+            throw new IllegalArgumentException("Inconsistent forecast days");
+        }
+        this.timestamp = timestamp;
+        this.firstDay = firstDay;
+        this.metric = metric;
+        this.highs = highs;
+        this.lows = lows;
+        this.weatherIds = weatherIds;
+    }
+
+    public int getDayCount() {
+        return highs.length;
+    }
+
+    /**
+     * Returns the index of the forecast for the given day, or -1 if the forecast does not
+     * cover it.
+     *
+     * @param day days since the epoch
+     */
+    public int getDayIndex(int day) {
+        int index = day - firstDay;
+        return index >= 0 && index < getDayCount() ? index : -1;
+    }
+
+    /**
+     * Whether both payloads describe the same forecast, ignoring when it was synced.
+     */
+    public boolean sameForecast(WeatherPayload other) {
+        return other != null
+                && firstDay == other.firstDay
+                && metric == other.metric
+                && Arrays.equals(highs, other.highs)
+                && Arrays.equals(lows, other.lows)
+                && Arrays.equals(weatherIds, other.weatherIds);
+    }
+
+    public byte[] toBytes() {
+        int dayCount = getDayCount();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + dayCount * DAY_SIZE);
+        buffer.put(VERSION);
+        buffer.put((byte) (metric ? FLAG_METRIC : 0));
+        buffer.putLong(timestamp);
+        buffer.putInt(firstDay);
+        buffer.put((byte) dayCount);
+        for (int i = 0; i < dayCount; i++) {
+            buffer.putShort(highs[i]);
+            buffer.putShort(lows[i]);
+            buffer.putShort(weatherIds[i]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the data is truncated or of an unknown version
+     */
+    public static WeatherPayload fromBytes(byte[] data) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unknown payload version " + version);
+            }
+            int flags = buffer.get();
+            long timestamp = buffer.getLong();
+            int firstDay = buffer.getInt();
+            int dayCount = buffer.get();
+            if (dayCount < 0) {
+                throw new IllegalArgumentException("Invalid day count " + dayCount);
+            }
+            short[] highs = new short[dayCount];
+            short[] lows = new short[dayCount];
+            short[] weatherIds = new short[dayCount];
+            for (int i = 0; i < dayCount; i++) {
+                highs[i] = buffer.getShort();
+                lows[i] = buffer.getShort();
+                weatherIds[i] = buffer.getShort();
+            }
+            return new WeatherPayload(timestamp, firstDay, (flags & FLAG_METRIC) != 0,
+                    highs, lows, weatherIds);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated payload", e);
+        }
+    }
+
+    /**
+     * Converts degrees Celsius to the fixed point form used on the wire, clamping to its range.
+     */
+    public static short toFixedPoint(double celsius) {
+        long tenths = Math.round(celsius * 10);
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, tenths));
+    }
+
+    public static double fromFixedPoint(short tenths) {
+        return tenths / 10.0;
+    }
+
+    /**
+     * Days since the epoch of the local day the time falls on.  Dates in the weather table
+     * are local midnights, so the phone and the watch have to count them in their own zone.
+     */
+    public static int toDay(long timeInMillis, TimeZone zone) {
+        long localMillis = timeInMillis + zone.getOffset(timeInMillis);
+        long day = localMillis / DAY_IN_MILLIS;
+        if (localMillis % DAY_IN_MILLIS < 0) {
+            // before the epoch, round down
+            day--;
+        }
+        return (int) day;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.common;
+
+/**
+ * Wind speed and direction as shown to the user.
+ */
+public final class WindFormatter {
+
+    private static final float MILES_PER_KILOMETER = .621371192237334f;
+
+    // Each direction covers 45 degrees, centered on it.
+    private static final String[] DIRECTIONS = {"N", "NE", "E", "SE", "S", "SW", "W", "NW"};
+    private static final String UNKNOWN_DIRECTION = "Unknown";
+
+    private WindFormatter() {
+    }
+
+    /**
+     * Data is stored in km/h.  Converts it for a user that prefers mph.
+     */
+    public static float toDisplayUnits(float kilometersPerHour, boolean metric) {
+        return metric ? kilometersPerHour : MILES_PER_KILOMETER * kilometersPerHour;
+    }
+
+    /**
+     * From wind direction in degrees, determine compass direction as a string (e.g NW).
+     * Anything below 22.5 or from 337.5 on counts as north.
+     */
+    public static String getCompassDirection(float degrees) {
+        if (degrees >= 337.5f || degrees < 22.5f) {
+            return DIRECTIONS[0];
+        } else if (Float.isNaN(degrees)) {
+            return UNKNOWN_DIRECTION;
+        }
+        return DIRECTIONS[(int) ((degrees + 22.5) / 45)];
+    }
+}
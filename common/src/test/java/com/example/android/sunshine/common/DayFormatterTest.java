@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.common;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+public class DayFormatterTest {
+
+    @Test
+    public void testDaysBetween() {
+        TimeZone defaultTimeZone = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("America/Los_Angeles"));
+            // 2015-07-14 10:00 UTC is 03:00 the same day in Mountain View
+            long now = 1436868000000L;
+            long hour = 60 * 60 * 1000;
+            assertEquals(0, DayFormatter.getDaysBetween(now, now + 20 * hour));
+            assertEquals(1, DayFormatter.getDaysBetween(now, now + 21 * hour));
+            assertEquals(-1, DayFormatter.getDaysBetween(now, now - 4 * hour));
+            assertEquals(7, DayFormatter.getDaysBetween(now, now + 7 * 24 * hour));
+        } finally {
+            TimeZone.setDefault(defaultTimeZone);
+        }
+    }
+
+    @Test
+    public void testFollowsDefaultLocale() {
+        Locale defaultLocale = Locale.getDefault();
+        TimeZone defaultTimeZone = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+            DayFormatter formatter = new DayFormatter();
+            long date = 1436868000000L;
+
+            Locale.setDefault(Locale.US);
+            assertEquals("Tuesday", formatter.formatDayName(date));
+            assertEquals("Tue Jul 14", formatter.formatShortDate(date));
+
+            Locale.setDefault(Locale.FRANCE);
+            assertEquals("juillet 14", formatter.formatMonthDay(date));
+        } finally {
+            Locale.setDefault(defaultLocale);
+            TimeZone.setDefault(defaultTimeZone);
+        }
+    }
+}
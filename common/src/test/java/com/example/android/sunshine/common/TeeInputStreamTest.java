@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.common;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class TeeInputStreamTest {
+
+    @Test
+    public void testCopiesReadAndSkippedBytes() throws IOException {
+        byte[] data = new byte[10000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        InputStream in = new TeeInputStream(new ByteArrayInputStream(data), copy);
+
+        assertEquals(0, in.read());
+        byte[] buffer = new byte[100];
+        assertEquals(100, in.read(buffer, 0, buffer.length));
+        assertEquals(5000, in.skip(5000));
+        while (in.read(buffer) != -1) {
+            // to the end
+        }
+        assertEquals(-1, in.read());
+        assertFalse(in.markSupported());
+
+        assertArrayEquals(data, copy.toByteArray());
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.common;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+public class TemperatureFormatterTest {
+
+    private static final String DEGREE = String.valueOf(TemperatureFormatter.DEGREE);
+
+    @Test
+    public void testMatchesStringFormat() {
+        double[] temperatures = {0, 0.49, 0.5, 1.5, 2.5, 21.4999, 21.5, 99.99, -1, -1.5, -2.5,
+                -17.8, 104.6, 12345.6};
+        for (double temperature : temperatures) {
+            assertEquals("Error: Unexpected text for " + temperature,
+                    String.format(Locale.US, "%1.0f", temperature) + DEGREE,
+                    TemperatureFormatter.format(temperature));
+        }
+    }
+
+    @Test
+    public void testNoNegativeZero() {
+        assertEquals("0" + DEGREE, TemperatureFormatter.format(-0.4));
+        assertEquals("0" + DEGREE, TemperatureFormatter.format(-0.0));
+        assertEquals("0" + DEGREE, TemperatureFormatter.formatFixedPoint((short) -4, true));
+    }
+
+    @Test
+    public void testFixedPoint() {
+        assertEquals("22" + DEGREE, TemperatureFormatter.formatFixedPoint((short) 215, true));
+        assertEquals("-3" + DEGREE, TemperatureFormatter.formatFixedPoint((short) -32, true));
+        // 21.5C is 70.7F, -17.8C is -0.04F
+        assertEquals("71" + DEGREE, TemperatureFormatter.formatFixedPoint((short) 215, false));
+        assertEquals("0" + DEGREE, TemperatureFormatter.formatFixedPoint((short) -178, false));
+        assertEquals("-40" + DEGREE, TemperatureFormatter.formatFixedPoint((short) -400, false));
+    }
+
+    @Test
+    public void testWritesAtOffset() {
+        char[] out = {'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x'};
+        int length = TemperatureFormatter.format(-12.7, out, 2);
+        assertEquals(4, length);
+        assertEquals("xx-13" + DEGREE + "xxxx", new String(out));
+    }
+
+    @Test
+    public void testLimits() {
+        char[] out = new char[TemperatureFormatter.MAX_LENGTH];
+        assertEquals(TemperatureFormatter.MAX_LENGTH,
+                TemperatureFormatter.format(Double.NEGATIVE_INFINITY, out, 0));
+        assertEquals("-99999" + DEGREE, new String(out));
+        assertEquals("--" + DEGREE, TemperatureFormatter.format(Double.NaN));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TickSchedulerTest {
+
+    // 2015-07-14 10:00:00 UTC
+    private static final long TEST_TIME = 1436868000000L;
+
+    @Test
+    public void testColonPhase() {
+        assertTrue(TickScheduler.isColonVisible(TEST_TIME));
+        assertTrue(TickScheduler.isColonVisible(TEST_TIME + 499));
+        assertFalse(TickScheduler.isColonVisible(TEST_TIME + 500));
+        assertFalse(TickScheduler.isColonVisible(TEST_TIME + 999));
+        assertTrue(TickScheduler.isColonVisible(TEST_TIME + 1000));
+    }
+
+    @Test
+    public void testBlinkingWakesOnEachPhase() {
+        assertEquals(TEST_TIME + 500, TickScheduler.nextChange(TEST_TIME, 0, true));
+        assertEquals(TEST_TIME + 500, TickScheduler.nextChange(TEST_TIME + 1, 0, true));
+        assertEquals(TEST_TIME + 1000, TickScheduler.nextChange(TEST_TIME + 500, 0, true));
+        assertEquals(1, TickScheduler.delayUntilNextChange(TEST_TIME + 999, 0, true));
+    }
+
+    @Test
+    public void testSteadyWakesOnTheMinute() {
+        assertEquals(TEST_TIME + TickScheduler.MINUTE_MS,
+                TickScheduler.nextChange(TEST_TIME, 0, false));
+        assertEquals(TEST_TIME + TickScheduler.MINUTE_MS,
+                TickScheduler.nextChange(TEST_TIME + 59999, 0, false));
+
+        // a whole hour of ticks, 120 times fewer than when blinking
+        int steady = 0;
+        int blinking = 0;
+        long end = TEST_TIME + 60 * TickScheduler.MINUTE_MS;
+        for (long t = TEST_TIME; t < end; t = TickScheduler.nextChange(t, 0, false)) {
+            steady++;
+        }
+        for (long t = TEST_TIME; t < end; t = TickScheduler.nextChange(t, 0, true)) {
+            blinking++;
+        }
+        assertEquals(60, steady);
+        assertEquals(120 * steady, blinking);
+    }
+
+    @Test
+    public void testLocalMinutes() {
+        // Kathmandu is 5:45 ahead and still changes minutes with UTC; an offset with seconds
+        // in it, like the old local mean times, moves the boundary
+        int kathmandu = (5 * 60 + 45) * 60 * 1000;
+        assertEquals(TEST_TIME + TickScheduler.MINUTE_MS,
+                TickScheduler.nextChange(TEST_TIME + 10, kathmandu, false));
+        int oddOffset = 30 * 1000;
+        assertEquals(TEST_TIME + 30 * 1000,
+                TickScheduler.nextChange(TEST_TIME, oddOffset, false));
+    }
+
+    @Test
+    public void testBeforeTheEpoch() {
+        assertEquals(0, TickScheduler.nextChange(-1, 0, false));
+        assertEquals(-500, TickScheduler.nextChange(-1000, 0, true));
+        assertFalse(TickScheduler.isColonVisible(-1));
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class WeatherConditionsTest {
+
+    @Test
+    public void testConditions() {
+        assertEquals(WeatherConditions.STORM, WeatherConditions.getCondition(200));
+        assertEquals(WeatherConditions.STORM, WeatherConditions.getCondition(781));
+        assertEquals(WeatherConditions.LIGHT_RAIN, WeatherConditions.getCondition(321));
+        assertEquals(WeatherConditions.SNOW, WeatherConditions.getCondition(511));
+        assertEquals(WeatherConditions.RAIN, WeatherConditions.getCondition(531));
+        assertEquals(WeatherConditions.FOG, WeatherConditions.getCondition(761));
+        assertEquals(WeatherConditions.CLEAR, WeatherConditions.getCondition(800));
+        assertEquals(WeatherConditions.LIGHT_CLOUDS, WeatherConditions.getCondition(801));
+        assertEquals(WeatherConditions.CLOUDS, WeatherConditions.getCondition(804));
+    }
+
+    @Test
+    public void testUnknownConditions() {
+        int[] unknown = {-1, 0, 199, 233, 505, 900, 1000, Integer.MAX_VALUE};
+        for (int weatherId : unknown) {
+            assertEquals("Error: Unexpected condition for " + weatherId,
+                    WeatherConditions.UNKNOWN, WeatherConditions.getCondition(weatherId));
+        }
+        assertNull(WeatherConditions.getArtName(WeatherConditions.UNKNOWN));
+        assertEquals("clouds", WeatherConditions.getArtName(WeatherConditions.CLOUDS));
+    }
+}
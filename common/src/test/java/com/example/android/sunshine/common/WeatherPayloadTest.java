@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.common;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WeatherPayloadTest {
+
+    private static WeatherPayload createPayload() {
+        return new WeatherPayload(1434916800000L, 16608, true,
+                new short[]{215, -32, 0},
+                new short[]{104, -120, -5},
+                new short[]{800, 601, 500});
+    }
+
+    /*
+        The phone counts the stored local midnights and the watch counts now in the same
+        zone, east and west of UTC they have to agree on the day.
+     */
+    @Test
+    public void testToDayInLocalZone() {
+        TimeZone defaultZone = TimeZone.getDefault();
+        try {
+            for (String id : new String[]{"Asia/Tokyo", "America/Los_Angeles", "UTC"}) {
+                TimeZone.setDefault(TimeZone.getTimeZone(id));
+                TimeZone zone = TimeZone.getDefault();
+
+                // local midnight of 2015-07-14, like WeatherContract.normalizeDate stores it
+                Calendar calendar = Calendar.getInstance();
+                calendar.clear();
+                calendar.set(2015, Calendar.JULY, 14);
+                long midnight = calendar.getTimeInMillis();
+
+                assertEquals("Error: Wrong day in " + id, 16630,
+                        WeatherPayload.toDay(midnight, zone));
+                assertEquals("Error: Evening is another day in " + id, 16630,
+                        WeatherPayload.toDay(midnight + 23 * 60 * 60 * 1000L, zone));
+                assertEquals(16631, WeatherPayload.toDay(
+                        midnight + WeatherPayload.DAY_IN_MILLIS, zone));
+            }
+        } finally {
+            TimeZone.setDefault(defaultZone);
+        }
+        assertEquals(-1, WeatherPayload.toDay(-1, TimeZone.getTimeZone("UTC")));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        WeatherPayload payload = createPayload();
+        byte[] bytes = payload.toBytes();
+        assertEquals("Error: Unexpected payload size", 15 + 3 * 6, bytes.length);
+
+        WeatherPayload decoded = WeatherPayload.fromBytes(bytes);
+        assertEquals(payload.timestamp, decoded.timestamp);
+        assertTrue("Error: Forecast changed on the way", payload.sameForecast(decoded));
+    }
+
+    @Test
+    public void testSameForecastIgnoresTimestamp() {
+        WeatherPayload payload = createPayload();
+        WeatherPayload later = new WeatherPayload(payload.timestamp + 1000, payload.firstDay,
+                payload.metric, payload.highs, payload.lows, payload.weatherIds);
+        assertTrue(payload.sameForecast(later));
+
+        WeatherPayload imperial = new WeatherPayload(payload.timestamp, payload.firstDay,
+                false, payload.highs, payload.lows, payload.weatherIds);
+        assertFalse(payload.sameForecast(imperial));
+    }
+
+    @Test
+    public void testDayIndex() {
+        WeatherPayload payload = createPayload();
+        assertEquals(-1, payload.getDayIndex(payload.firstDay - 1));
+        assertEquals(0, payload.getDayIndex(payload.firstDay));
+        assertEquals(2, payload.getDayIndex(payload.firstDay + 2));
+        assertEquals(-1, payload.getDayIndex(payload.firstDay + 3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncatedPayload() {
+        byte[] bytes = createPayload().toBytes();
+        byte[] truncated = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        WeatherPayload.fromBytes(truncated);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownVersion() {
+        byte[] bytes = createPayload().toBytes();
+        bytes[0] = WeatherPayload.VERSION + 1;
+        WeatherPayload.fromBytes(bytes);
+    }
+
+    @Test
+    public void testFixedPoint() {
+        assertEquals(215, WeatherPayload.toFixedPoint(21.54));
+        assertEquals(-33, WeatherPayload.toFixedPoint(-3.26));
+        assertEquals(Short.MAX_VALUE, WeatherPayload.toFixedPoint(1e6));
+        assertEquals(21.5, WeatherPayload.fromFixedPoint((short) 215), 0);
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.common;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class WindFormatterTest {
+
+    @Test
+    public void testCompassDirections() {
+        float[] degrees = {0, 22.4f, 22.5f, 67.5f, 112.5f, 157.4f, 202.5f, 247.5f, 292.5f,
+                337.4f, 337.5f, 359.9f, 360, -10};
+        String[] directions = {"N", "N", "NE", "E", "SE", "SE", "SW", "W", "NW",
+                "NW", "N", "N", "N", "N"};
+        for (int i = 0; i < degrees.length; i++) {
+            assertEquals("Error: Unexpected direction for " + degrees[i],
+                    directions[i], WindFormatter.getCompassDirection(degrees[i]));
+        }
+        assertEquals("Unknown", WindFormatter.getCompassDirection(Float.NaN));
+    }
+
+    @Test
+    public void testDisplayUnits() {
+        assertEquals(10f, WindFormatter.toDisplayUnits(10f, true), 0);
+        assertEquals(6.2137f, WindFormatter.toDisplayUnits(10f, false), 1e-4);
+    }
+}
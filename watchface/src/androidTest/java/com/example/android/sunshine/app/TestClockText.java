@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.common.ClockText;
+import com.example.android.sunshine.common.TickScheduler;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+public class TestClockText extends AndroidTestCase {
+
+    // 2015-07-14 10:00:00 UTC
+    static final long TEST_TIME = 1436868000000L;
+    static final int FRAMES = 2 * 60 * 60; // one hour of interactive frames
+
+    public void testTwoDigits() {
+        assertEquals("00", new String(ClockText.TWO_DIGITS[0]));
+        assertEquals("07", new String(ClockText.TWO_DIGITS[7]));
+        assertEquals("59", new String(ClockText.TWO_DIGITS[59]));
+
+        ClockText clockText = new ClockText();
+        clockText.setTime(9, 5);
+        assertEquals("09:", new String(clockText.hours, 0, ClockText.HOURS_WITH_COLON_LENGTH));
+        assertEquals("05", new String(clockText.minutes, 0, ClockText.MINUTES_LENGTH));
+    }
+
+    public void testDateOnlyFormattedOncePerDay() {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        SimpleDateFormat dateFormat = new SimpleDateFormat("ccc, MMM d yyyy", Locale.US);
+        dateFormat.setCalendar(calendar);
+        ClockText clockText = new ClockText();
+
+        calendar.setTimeInMillis(TEST_TIME);
+        assertTrue(clockText.updateDate(calendar, dateFormat));
+        assertEquals("TUE, JUL 14 2015", new String(clockText.date, 0, clockText.dateLength));
+
+        calendar.setTimeInMillis(TEST_TIME + 60 * 60 * 1000);
+        assertFalse(clockText.updateDate(calendar, dateFormat));
+
+        calendar.setTimeInMillis(TEST_TIME + 24 * 60 * 60 * 1000);
+        assertTrue(clockText.updateDate(calendar, dateFormat));
+        assertEquals("WED, JUL 15 2015", new String(clockText.date, 0, clockText.dateLength));
+
+        clockText.invalidateDate();
+        assertTrue(clockText.updateDate(calendar, dateFormat));
+    }
+
+    /*
+        Draws an hour of frames within the same day through FaceRenderer.drawFrame, the code
+        SunshineWatchFace.Engine.onDraw runs, and checks that none of them allocates.
+     */
+    public void testFrameDoesNotAllocate() {
+        FaceRenderer renderer = new FaceRenderer(getContext().getResources());
+        renderer.setTimeZone(TimeZone.getTimeZone("UTC"));
+        renderer.setTextSizes(getContext().getResources());
+        WeatherSnapshot weather = new WeatherSnapshot(null, "25\u00B0", "16\u00B0", 0, null);
+        Canvas canvas = new Canvas(Bitmap.createBitmap(320, 320, Bitmap.Config.ARGB_8888));
+
+        // warm up: the first frame of the day formats the date and allocates the static layer
+        assertTrue(renderer.drawFrame(canvas, 320, 320, TEST_TIME, weather, true));
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        boolean dayChanged = false;
+        try {
+            for (int i = 1; i < FRAMES; i++) {
+                long now = TEST_TIME + i * 500L;
+                dayChanged |= renderer.drawFrame(canvas, 320, 320, now, weather,
+                        TickScheduler.isColonVisible(now));
+            }
+        } finally {
+            Debug.stopAllocCounting();
+        }
+        assertFalse(dayChanged);
+        assertEquals("Error: onDraw allocated in steady state", 0, Debug.getThreadAllocCount());
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.graphics.Paint;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.common.ClockText;
+
+public class TestFaceLayout extends AndroidTestCase {
+
+    private static final int CENTER_X = 160;
+    private static final int CENTER_Y = 160;
+
+    private static Paint createPaint(float textSize) {
+        Paint paint = new Paint();
+        paint.setAntiAlias(true);
+        paint.setTextSize(textSize);
+        return paint;
+    }
+
+    public void testTimeMatchesMeasuredText() {
+        Paint hoursPaint = createPaint(34);
+        Paint minutesPaint = createPaint(34);
+        FaceLayout layout = new FaceLayout();
+        layout.measureClock(hoursPaint, minutesPaint);
+
+        layout.layoutTime(CENTER_X, CENTER_Y, 10, 42, 100, 12);
+
+        ClockText clockText = new ClockText();
+        clockText.setTime(10, 42);
+        assertEquals(layout.hoursX + hoursPaint.measureText(clockText.hours, 0,
+                ClockText.HOURS_LENGTH), layout.colonX, 0.01f);
+        assertTrue(layout.minutesX > layout.colonX);
+        assertEquals(CENTER_Y - FaceLayout.OFFSET_Y + 4 - 12, layout.timeY, 0.01f);
+        assertEquals(CENTER_X - 50, layout.dateX, 0.01f);
+    }
+
+    public void testWeatherMeasuredOncePerRow() {
+        Paint paint = createPaint(24);
+        FaceLayout layout = new FaceLayout();
+        layout.measureClock(createPaint(34), createPaint(34));
+
+        WeatherSnapshot weather = new WeatherSnapshot(null, "25\u00B0", "16\u00B0", 0, null);
+        layout.layoutWeather(CENTER_X, CENTER_Y, weather, weather.high, paint, 20, 20);
+        float highX = layout.highX;
+        assertTrue(highX < CENTER_X);
+        assertTrue(layout.lowX > CENTER_X);
+        assertEquals(highX - FaceLayout.OFFSET_X - 20, layout.iconX, 0.01f);
+
+        // the same row isn't measured again, even with a paint that would measure differently
+        paint.setTextSize(48);
+        layout.layoutWeather(CENTER_X, CENTER_Y, weather, weather.high, paint, 20, 20);
+        assertEquals(highX, layout.highX, 0.01f);
+
+        // new text sizes measure it again
+        layout.measureClock(createPaint(34), createPaint(34));
+        layout.layoutWeather(CENTER_X, CENTER_Y, weather, weather.high, paint, 20, 20);
+        assertTrue(layout.highX < highX);
+    }
+}
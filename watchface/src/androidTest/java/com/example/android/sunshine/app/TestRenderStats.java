@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.test.AndroidTestCase;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+public class TestRenderStats extends AndroidTestCase {
+
+    private static final long MILLI = 1000 * 1000;
+
+    public void testDrawPercentiles() {
+        RenderStats stats = new RenderStats();
+        assertEquals(0, stats.getDrawPercentileNanos(50));
+
+        for (int i = 0; i < 95; i++) {
+            stats.recordDraw(3 * MILLI, false);
+        }
+        for (int i = 0; i < 5; i++) {
+            stats.recordDraw(40 * MILLI, true);
+        }
+        assertEquals(100, stats.getDraws());
+
+        // bounded by the bucket, never more than twice the real value
+        long p50 = stats.getDrawPercentileNanos(50);
+        assertTrue("Error: p50 was " + p50, p50 >= 3 * MILLI && p50 <= 6 * MILLI);
+        assertEquals(40 * MILLI, stats.getDrawPercentileNanos(99));
+    }
+
+    public void testMissedTicks() {
+        RenderStats stats = new RenderStats();
+
+        // the first tick of a timer was never scheduled
+        stats.recordTick(1000, false);
+        stats.scheduleTick(1500);
+        stats.recordTick(1505, false);
+        assertEquals(0, stats.getMissedTicks());
+
+        stats.scheduleTick(2000);
+        stats.recordTick(2000 + RenderStats.MISSED_TICK_SLACK_MS + 1, false);
+        assertEquals(1, stats.getMissedTicks());
+
+        // a restarted timer ticks right away, that isn't late
+        stats.scheduleTick(2500);
+        stats.cancelTick();
+        stats.recordTick(3000, true);
+        assertEquals(1, stats.getMissedTicks());
+    }
+
+    public void testFramesPerVisibleMinute() {
+        RenderStats stats = new RenderStats();
+        stats.setVisible(true, 0);
+        for (int i = 0; i < 60; i++) {
+            stats.recordDraw(MILLI, false);
+        }
+        stats.setVisible(false, 30000);
+
+        // the time spent hidden doesn't count
+        assertEquals(120f, stats.getFramesPerMinute(90000), 0.01f);
+
+        StringWriter out = new StringWriter();
+        PrintWriter writer = new PrintWriter(out);
+        stats.dump(writer, 90000);
+        writer.flush();
+        assertTrue(out.toString(), out.toString().startsWith("Draws: 60 (0 ambient)"));
+
+        stats.reset(90000);
+        assertEquals(0, stats.getDraws());
+        assertEquals(0f, stats.getFramesPerMinute(90000));
+    }
+}
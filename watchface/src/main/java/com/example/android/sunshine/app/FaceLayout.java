@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import com.example.android.sunshine.common.ClockText;
+
+/**
+ * Where each element of the watch face goes, so drawing only places text and bitmaps.
+ * <p/>
+ * Text is measured once per paint and text: the clock for every hour and minute when the text
+ * sizes change, the weather row when new weather is shown.  Positions are then plain
+ * arithmetic on those numbers, done by {@link #layoutTime} and {@link #layoutWeather}.
+ */
+final class FaceLayout {
+
+    // Spacing of the face, in pixels
+    static final int LINE_HALF_WIDTH = 22;
+    static final int OFFSET_Y = 20;
+    static final int OFFSET_X = 10;
+
+    // The advance of "HH:" and "HH" for every hour, and the ink width of "MM" for every minute
+    private final int[] mHoursWithColonWidths = new int[24];
+    private final float[] mHoursWidths = new float[24];
+    private final int[] mMinutesWidths = new int[60];
+
+    // The weather row as measured, and for which snapshot or text
+    private Object mMeasuredRow;
+    private int mRowWidth;
+    private int mRowHeight;
+
+    private final Rect mBounds = new Rect();
+
+    // Origins, set by the layout methods
+    float hoursX;
+    float colonX;
+    float minutesX;
+    float timeY;
+    float dateX;
+    float dateY;
+    float lineStartX;
+    float lineEndX;
+    float lineY;
+    float rowY;
+    float highX;
+    float lowX;
+    float iconX;
+    float iconY;
+
+    /**
+     * Measures the clock in every hour and minute.  Called when the text sizes change, the
+     * weather row is measured again then too.
+     */
+    void measureClock(Paint hoursPaint, Paint minutesPaint) {
+        char[] hours = new char[ClockText.HOURS_WITH_COLON_LENGTH];
+        hours[ClockText.HOURS_LENGTH] = ClockText.COLON;
+        for (int hour = 0; hour < mHoursWidths.length; hour++) {
+            hours[0] = ClockText.TWO_DIGITS[hour][0];
+            hours[1] = ClockText.TWO_DIGITS[hour][1];
+            mHoursWithColonWidths[hour] = (int) hoursPaint.measureText(hours, 0,
+                    ClockText.HOURS_WITH_COLON_LENGTH);
+            mHoursWidths[hour] = hoursPaint.measureText(hours, 0, ClockText.HOURS_LENGTH);
+        }
+        for (int minute = 0; minute < mMinutesWidths.length; minute++) {
+            minutesPaint.getTextBounds(ClockText.TWO_DIGITS[minute], 0, ClockText.MINUTES_LENGTH,
+                    mBounds);
+            mMinutesWidths[minute] = mBounds.width();
+        }
+        mMeasuredRow = null;
+    }
+
+    /**
+     * Places the time above the date, and the date and line around the center.
+     *
+     * @param dateHeight the height of the date text
+     */
+    void layoutTime(int centerX, int centerY, int hourOfDay, int minute, int dateWidth,
+                    int dateHeight) {
+        // the hours are measured with the colon, so the time doesn't move when it blinks
+        float timeWidth = mHoursWithColonWidths[hourOfDay] + mMinutesWidths[minute];
+        hoursX = centerX - timeWidth / 2;
+        colonX = hoursX + mHoursWidths[hourOfDay];
+        minutesX = centerX + ((timeWidth / 2) - mMinutesWidths[minute]);
+        timeY = centerY - OFFSET_Y + 4 - dateHeight;
+
+        dateX = centerX - dateWidth / 2;
+        dateY = centerY;
+
+        lineStartX = centerX - LINE_HALF_WIDTH;
+        lineEndX = centerX + LINE_HALF_WIDTH;
+        lineY = centerY + OFFSET_Y;
+    }
+
+    /**
+     * Places the weather row below the line: the high temperature centered, the low to its
+     * right and the icon to its left, or the text shown when there is no weather.  The text
+     * is only measured when it isn't the one measured last.
+     *
+     * @param row the snapshot the row shows, or the text when there are no temperatures
+     */
+    void layoutWeather(int centerX, int centerY, Object row, String rowText, Paint rowPaint,
+                       int iconWidth, int iconHeight) {
+        if (row != mMeasuredRow) {
+            rowPaint.getTextBounds(rowText, 0, rowText.length(), mBounds);
+            mRowWidth = mBounds.width();
+            mRowHeight = mBounds.height();
+            mMeasuredRow = row;
+        }
+        rowY = centerY + mRowHeight + OFFSET_Y + OFFSET_Y;
+        highX = centerX - mRowWidth / 2;
+        lowX = centerX + mRowWidth / 2 + OFFSET_X;
+        iconX = centerX - mRowWidth / 2 - OFFSET_X - iconWidth;
+        iconY = rowY - iconHeight / 2 - mRowHeight / 2;
+    }
+}
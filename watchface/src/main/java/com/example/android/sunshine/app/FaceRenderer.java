@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+
+import com.example.android.sunshine.common.ClockText;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Draws the frames of {@link SunshineWatchFace}: the paints, the clock text and the cached
+ * static layer, without the engine's timers and data layer.
+ * <p/>
+ * Everything but the blinking colon changes at most once a minute, so it is rendered into an
+ * offscreen layer then and each frame copies the layer and draws the colon on top.  A frame
+ * within the same minute allocates nothing.
+ */
+final class FaceRenderer {
+
+    private static final Typeface NORMAL_TYPEFACE = Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL);
+    private static final Typeface LIGHT_TYPEFACE = Typeface.create("sans-serif-light", Typeface.NORMAL);
+
+    private final int mBackgroundColorInteractive;
+    private final int mBackgroundColorAmbient;
+    private final Paint mBackgroundPaint;
+    private final Paint mLinePaint;
+    private final Paint mTextPaint_time;
+    private final Paint mTextPaint_time_light;
+    private final Paint mTextPaint_date;
+    private final Paint mTextPaint_temp;
+    private final Paint mTextPaint_temp_light;
+    private final Rect mDateBounds = new Rect();
+    private final String mNoWeatherInfo;
+
+    private final Calendar mCalendar = Calendar.getInstance();
+    private SimpleDateFormat mDateFormat;
+    private final ClockText mClockText = new ClockText();
+    private final FaceLayout mLayout = new FaceLayout();
+
+    private boolean mAmbient;
+
+    // Offscreen copy of everything but the blinking colon
+    private Bitmap mStaticLayer;
+    private Canvas mStaticLayerCanvas;
+    private volatile boolean mStaticLayerDirty = true;
+    // the minute of the day the layer shows
+    private int mLayerMinuteOfDay = -1;
+
+    /**
+     * An icon that is no longer drawn and whose memory the next decode may reuse.
+     */
+    private final AtomicReference<Bitmap> mReusableIcon = new AtomicReference<>();
+    private WeatherSnapshot mDrawnWeather = WeatherSnapshot.EMPTY;
+
+    FaceRenderer(Resources resources) {
+        mBackgroundColorInteractive = resources.getColor(R.color.digital_background_interactive);
+        mBackgroundColorAmbient = resources.getColor(R.color.digital_background_ambient);
+
+        mBackgroundPaint = new Paint();
+        mBackgroundPaint.setColor(mBackgroundColorInteractive);
+
+        mTextPaint_time = createTextPaint(resources.getColor(R.color.main_text), NORMAL_TYPEFACE);
+        mTextPaint_time_light = createTextPaint(resources.getColor(R.color.main_text), LIGHT_TYPEFACE);
+
+        mTextPaint_date = createTextPaint(resources.getColor(R.color.second_text), LIGHT_TYPEFACE);
+        mTextPaint_date.setAlpha(200);
+
+        mTextPaint_temp = createTextPaint(resources.getColor(R.color.main_text), NORMAL_TYPEFACE);
+        mTextPaint_temp_light = createTextPaint(resources.getColor(R.color.second_text), LIGHT_TYPEFACE);
+        mTextPaint_temp_light.setAlpha(200);
+
+        mLinePaint = createLinePaint(resources.getColor(R.color.second_text), 0.5f);
+
+        mNoWeatherInfo = resources.getString(R.string.no_weather_info);
+
+        initFormats();
+    }
+
+    private static Paint createTextPaint(int textColor, Typeface typeface) {
+        Paint paint = new Paint();
+        paint.setColor(textColor);
+        paint.setTypeface(typeface);
+        paint.setAntiAlias(true);
+        return paint;
+    }
+
+    private static Paint createLinePaint(int textColor, float strokeWidth) {
+        Paint paint = new Paint();
+        paint.setColor(textColor);
+        paint.setStrokeWidth(strokeWidth);
+        paint.setAntiAlias(true);
+        return paint;
+    }
+
+    private void initFormats() {
+        mDateFormat = new SimpleDateFormat("ccc, MMM d yyyy", Locale.getDefault());
+        mDateFormat.setCalendar(mCalendar);
+        mClockText.invalidateDate();
+    }
+
+    TimeZone getTimeZone() {
+        return mCalendar.getTimeZone();
+    }
+
+    /**
+     * Shows the time in {@code timeZone}, formatting the date again in the current locale.
+     */
+    void setTimeZone(TimeZone timeZone) {
+        mCalendar.setTimeZone(timeZone);
+        initFormats();
+    }
+
+    /**
+     * Sets the text sizes from the dimensions and measures the clock for them.
+     */
+    void setTextSizes(Resources resources) {
+        mTextPaint_time_light.setTextSize(resources.getDimension(R.dimen.time_text_size));
+        mTextPaint_time.setTextSize(resources.getDimension(R.dimen.time_text_size));
+        mTextPaint_date.setTextSize(resources.getDimension(R.dimen.date_text_size));
+        mTextPaint_temp_light.setTextSize(resources.getDimension(R.dimen.temp_text_size));
+        mTextPaint_temp.setTextSize(resources.getDimension(R.dimen.temp_text_size));
+
+        // the only place the text sizes change, measure the clock for them once
+        mLayout.measureClock(mTextPaint_time, mTextPaint_time_light);
+
+        // the date has to be measured again with the new text size
+        mClockText.invalidateDate();
+        mStaticLayerDirty = true;
+    }
+
+    /**
+     * Switches to the ambient colors, and in low-bit ambient mode also turns off anti-aliasing.
+     */
+    void setAmbient(boolean ambient, boolean lowBitAmbient) {
+        mAmbient = ambient;
+        mBackgroundPaint.setColor(ambient ? mBackgroundColorAmbient : mBackgroundColorInteractive);
+        if (lowBitAmbient) {
+            mTextPaint_time.setAntiAlias(!ambient);
+            mTextPaint_time_light.setAntiAlias(!ambient);
+            mTextPaint_date.setAntiAlias(!ambient);
+            mTextPaint_temp.setAntiAlias(!ambient);
+            mTextPaint_temp_light.setAntiAlias(!ambient);
+            mLinePaint.setAntiAlias(!ambient);
+        }
+        mStaticLayerDirty = true;
+    }
+
+    /**
+     * Marks the static layer as stale, so the next frame renders it again.  Safe to call from
+     * any thread.
+     */
+    void invalidateStaticLayer() {
+        mStaticLayerDirty = true;
+    }
+
+    /**
+     * Returns an icon that is no longer drawn, for a decode to reuse, or null.  Safe to call
+     * from any thread.
+     */
+    Bitmap takeReusableIcon() {
+        return mReusableIcon.getAndSet(null);
+    }
+
+    /**
+     * Draws the frame at {@code now}.
+     *
+     * @param drawColons whether the blinking colon is on in this frame
+     * @return whether the day changed since the last frame, so the weather shown may be stale
+     */
+    boolean drawFrame(Canvas canvas, int width, int height, long now, WeatherSnapshot weather,
+                      boolean drawColons) {
+        mCalendar.setTimeInMillis(now);
+
+        ClockText clockText = mClockText;
+
+        // the date is formatted and measured only when the day changes
+        boolean dayChanged = clockText.updateDate(mCalendar, mDateFormat);
+        if (dayChanged) {
+            mTextPaint_date.getTextBounds(clockText.date, 0, clockText.dateLength, mDateBounds);
+            mStaticLayerDirty = true;
+        }
+
+        int hourOfDay = mCalendar.get(Calendar.HOUR_OF_DAY);
+        int minute = mCalendar.get(Calendar.MINUTE);
+        if (hourOfDay * 60 + minute != mLayerMinuteOfDay) {
+            mLayerMinuteOfDay = hourOfDay * 60 + minute;
+            clockText.setTime(hourOfDay, minute);
+            mStaticLayerDirty = true;
+        }
+
+        // Draw everything but the colon from the cached layer, rendering it again only when
+        // the time, the date or the weather changed.
+        if (mStaticLayer == null
+                || mStaticLayer.getWidth() != width || mStaticLayer.getHeight() != height) {
+            recycle();
+            mStaticLayer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mStaticLayerCanvas = new Canvas(mStaticLayer);
+            mStaticLayerDirty = true;
+        }
+        if (mStaticLayerDirty) {
+            mStaticLayerDirty = false;
+            drawStaticLayer(mStaticLayerCanvas, width, height, weather);
+        }
+        canvas.drawBitmap(mStaticLayer, 0, 0, null);
+
+        // blinking Colons, the only part of a frame that isn't in the layer
+        if (!mAmbient && drawColons) {
+            canvas.drawText(clockText.hours, ClockText.HOURS_LENGTH,
+                    ClockText.HOURS_WITH_COLON_LENGTH - ClockText.HOURS_LENGTH,
+                    mLayout.colonX, mLayout.timeY, mTextPaint_time);
+        }
+        return dayChanged;
+    }
+
+    /**
+     * Renders everything but the blinking colon: the background, the time, the date, the
+     * line and the weather.
+     */
+    private void drawStaticLayer(Canvas canvas, int width, int height, WeatherSnapshot weather) {
+        int centerX = width / 2;
+        int centerY = height / 2;
+
+        // Draw the background.
+        canvas.drawRect(0, 0, width, height, mBackgroundPaint);
+
+        // Once the layer no longer shows the previous icon its memory can be reused.
+        if (weather != mDrawnWeather) {
+            if (mDrawnWeather.icon != null && mDrawnWeather.icon != weather.icon) {
+                mReusableIcon.set(mDrawnWeather.icon);
+            }
+            mDrawnWeather = weather;
+        }
+
+        ClockText clockText = mClockText;
+        FaceLayout layout = mLayout;
+        layout.layoutTime(centerX, centerY, mCalendar.get(Calendar.HOUR_OF_DAY),
+                mCalendar.get(Calendar.MINUTE), mDateBounds.width(), mDateBounds.height());
+
+        // draw time, leaving a gap for the colon
+        canvas.drawText(clockText.hours, 0, ClockText.HOURS_LENGTH,
+                layout.hoursX, layout.timeY, mTextPaint_time);
+        canvas.drawText(clockText.minutes, 0, ClockText.MINUTES_LENGTH,
+                layout.minutesX, layout.timeY, mTextPaint_time_light);
+
+        if (mAmbient) {
+            return;
+        }
+
+        // draw date
+        canvas.drawText(clockText.date, 0, clockText.dateLength,
+                layout.dateX, layout.dateY, mTextPaint_date);
+
+        // draw line
+        canvas.drawLine(layout.lineStartX, layout.lineY, layout.lineEndX, layout.lineY,
+                mLinePaint);
+
+        // the whole row comes from the same snapshot
+        if (weather.hasTemperatures()) {
+            Bitmap icon = weather.icon;
+            layout.layoutWeather(centerX, centerY, weather, weather.high, mTextPaint_temp,
+                    icon != null ? icon.getWidth() : 0, icon != null ? icon.getHeight() : 0);
+
+            // draw temperature high
+            canvas.drawText(weather.high, layout.highX, layout.rowY, mTextPaint_temp);
+
+            // draw temperature low
+            canvas.drawText(weather.low, layout.lowX, layout.rowY, mTextPaint_temp_light);
+
+            if (icon != null) {
+                // draw weather icon
+                canvas.drawBitmap(icon, layout.iconX, layout.iconY, null);
+            }
+        } else {
+            String text = mNoWeatherInfo;
+            layout.layoutWeather(centerX, centerY, text, text, mTextPaint_date, 0, 0);
+            canvas.drawText(text, layout.highX, layout.rowY, mTextPaint_date);
+        }
+    }
+
+    /**
+     * Frees the static layer; the next frame allocates it again.
+     */
+    void recycle() {
+        if (mStaticLayer != null) {
+            mStaticLayer.recycle();
+            mStaticLayer = null;
+            mStaticLayerCanvas = null;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import java.io.PrintWriter;
+
+/**
+ * How long the watch face takes to draw and how often it wakes up, to check rendering and
+ * battery changes on a real watch.
+ * <p/>
+ * Draws go into a histogram with power of two buckets, timer ticks are counted by mode and
+ * checked against the time they were scheduled for, and the weather decodes are timed.
+ * Recording allocates nothing.  Times are passed in, from {@code SystemClock.elapsedRealtime()}
+ * and {@link System#nanoTime()}, so ticks delayed by a sleeping CPU count as late.
+ */
+final class RenderStats {
+
+    /**
+     * How late a tick may be before it counts as missed: about one frame.
+     */
+    static final long MISSED_TICK_SLACK_MS = 20;
+
+    // Bucket i holds draws shorter than 2^i microseconds, the last one everything longer
+    private static final int BUCKET_COUNT = 18;
+
+    private final long[] mDrawBuckets = new long[BUCKET_COUNT];
+    private long mDraws;
+    private long mAmbientDraws;
+    private long mDrawNanos;
+    private long mMaxDrawNanos;
+
+    private long mInteractiveTicks;
+    private long mMuteTicks;
+    private long mAmbientTicks;
+    private long mMissedTicks;
+    private long mMaxTickLatenessMs;
+    // when the pending tick should arrive, 0 if none is pending
+    private long mTickDeadline;
+
+    private long mDecodes;
+    private long mDecodeNanos;
+    private long mMaxDecodeNanos;
+
+    // how long the face was visible, for the frame rate
+    private long mVisibleMs;
+    private long mVisibleSince = -1;
+
+    synchronized void recordDraw(long nanos, boolean ambient) {
+        mDrawBuckets[bucket(nanos)]++;
+        mDraws++;
+        if (ambient) {
+            mAmbientDraws++;
+        }
+        mDrawNanos += nanos;
+        if (nanos > mMaxDrawNanos) {
+            mMaxDrawNanos = nanos;
+        }
+    }
+
+    /**
+     * Counts a tick of the interactive timer, and whether it came later than scheduled.
+     */
+    synchronized void recordTick(long nowMs, boolean mute) {
+        if (mute) {
+            mMuteTicks++;
+        } else {
+            mInteractiveTicks++;
+        }
+        if (mTickDeadline != 0) {
+            long lateness = nowMs - mTickDeadline;
+            if (lateness > MISSED_TICK_SLACK_MS) {
+                mMissedTicks++;
+            }
+            if (lateness > mMaxTickLatenessMs) {
+                mMaxTickLatenessMs = lateness;
+            }
+            mTickDeadline = 0;
+        }
+    }
+
+    /**
+     * Remembers when the next tick is due, to judge it in {@link #recordTick}.
+     */
+    synchronized void scheduleTick(long deadlineMs) {
+        mTickDeadline = deadlineMs;
+    }
+
+    /**
+     * Forgets the pending tick, e.g. when the timer is restarted right away.
+     */
+    synchronized void cancelTick() {
+        mTickDeadline = 0;
+    }
+
+    /**
+     * Counts a once a minute wake in ambient mode.
+     */
+    synchronized void recordAmbientTick() {
+        mAmbientTicks++;
+    }
+
+    synchronized void recordDecode(long nanos) {
+        mDecodes++;
+        mDecodeNanos += nanos;
+        if (nanos > mMaxDecodeNanos) {
+            mMaxDecodeNanos = nanos;
+        }
+    }
+
+    synchronized void setVisible(boolean visible, long nowMs) {
+        if (visible && mVisibleSince < 0) {
+            mVisibleSince = nowMs;
+        } else if (!visible && mVisibleSince >= 0) {
+            mVisibleMs += nowMs - mVisibleSince;
+            mVisibleSince = -1;
+        }
+    }
+
+    synchronized long getDraws() {
+        return mDraws;
+    }
+
+    synchronized long getMissedTicks() {
+        return mMissedTicks;
+    }
+
+    /**
+     * Frames drawn per minute of being visible.
+     */
+    synchronized float getFramesPerMinute(long nowMs) {
+        long visibleMs = mVisibleMs + (mVisibleSince >= 0 ? nowMs - mVisibleSince : 0);
+        return visibleMs > 0 ? mDraws * 60000f / visibleMs : 0;
+    }
+
+    /**
+     * An upper bound of the given percentile of the draw times, from the histogram.
+     *
+     * @return nanoseconds, 0 if nothing was drawn
+     */
+    synchronized long getDrawPercentileNanos(int percentile) {
+        if (mDraws == 0) {
+            return 0;
+        }
+        long rank = (mDraws * percentile + 99) / 100;
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+            seen += mDrawBuckets[i];
+            if (seen >= rank) {
+                return Math.min((1L << i) * 1000, mMaxDrawNanos);
+            }
+        }
+        return mMaxDrawNanos;
+    }
+
+    synchronized void reset(long nowMs) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mDrawBuckets[i] = 0;
+        }
+        mDraws = mAmbientDraws = mDrawNanos = mMaxDrawNanos = 0;
+        mInteractiveTicks = mMuteTicks = mAmbientTicks = 0;
+        mMissedTicks = mMaxTickLatenessMs = 0;
+        mDecodes = mDecodeNanos = mMaxDecodeNanos = 0;
+        mVisibleMs = 0;
+        if (mVisibleSince >= 0) {
+            mVisibleSince = nowMs;
+        }
+    }
+
+    private static int bucket(long nanos) {
+        // the first power of two above the microseconds
+        int bucket = 64 - Long.numberOfLeadingZeros(nanos / 1000);
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    synchronized void dump(PrintWriter writer, long nowMs) {
+        writer.println("Draws: " + mDraws + " (" + mAmbientDraws + " ambient), " +
+                String.format("%.1f", getFramesPerMinute(nowMs)) + " per visible minute");
+        if (mDraws > 0) {
+            writer.println("Draw ms: mean " + toMillis(mDrawNanos / mDraws) +
+                    ", p50 " + toMillis(getDrawPercentileNanos(50)) +
+                    ", p90 " + toMillis(getDrawPercentileNanos(90)) +
+                    ", p99 " + toMillis(getDrawPercentileNanos(99)) +
+                    ", max " + toMillis(mMaxDrawNanos));
+        }
+        writer.println("Wakes: " + mInteractiveTicks + " interactive, " + mMuteTicks +
+                " mute, " + mAmbientTicks + " ambient; " + mMissedTicks +
+                " missed, at worst " + mMaxTickLatenessMs + " ms late");
+        if (mDecodes > 0) {
+            writer.println("Weather decodes: " + mDecodes + ", mean " +
+                    toMillis(mDecodeNanos / mDecodes) + " ms, max " +
+                    toMillis(mMaxDecodeNanos) + " ms");
+        }
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format("%.2f", nanos / 1000000.0);
+    }
+}
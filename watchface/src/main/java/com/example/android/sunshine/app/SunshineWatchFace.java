@@ -24,12 +24,11 @@ import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.Paint;
 import android.graphics.Rect;
-import android.graphics.Typeface;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
+import android.os.SystemClock;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
@@ -38,75 +37,106 @@ import android.view.Gravity;
 import android.view.SurfaceHolder;
 import android.view.WindowInsets;
 
+import com.example.android.sunshine.common.TemperatureFormatter;
+import com.example.android.sunshine.common.TickScheduler;
+import com.example.android.sunshine.common.WeatherConditions;
+import com.example.android.sunshine.common.WeatherPayload;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.wearable.Asset;
 import com.google.android.gms.wearable.DataApi;
 import com.google.android.gms.wearable.DataEvent;
 import com.google.android.gms.wearable.DataEventBuffer;
+import com.google.android.gms.wearable.DataMap;
 import com.google.android.gms.wearable.DataMapItem;
 import com.google.android.gms.wearable.Wearable;
 
-import java.io.InputStream;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.lang.ref.WeakReference;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.Locale;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.TimeZone;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Digital watch face with weather forecast. On devices with
  * low-bit ambient mode, the text is drawn without anti-aliasing in ambient mode.
  */
 public class SunshineWatchFace extends CanvasWatchFaceService {
-    private static final Typeface NORMAL_TYPEFACE = Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL);
-    private static final Typeface LIGHT_TYPEFACE = Typeface.create("sans-serif-light", Typeface.NORMAL);
-
     /**
-     * Update rate in milliseconds for normal (not ambient and not mute) mode. We update twice
-     * a second to blink the colons.
+     * Handler message id for updating the time periodically in interactive mode.
      */
-    private static final long NORMAL_UPDATE_RATE_MS = 500;
+    private static final int MSG_UPDATE_TIME = 0;
 
     /**
-     * Update rate in milliseconds for mute mode. We update every minute, like in ambient mode.
+     * Icon for each of the {@link WeatherConditions}, 0 where we have none.
      */
-    private static final long MUTE_UPDATE_RATE_MS = TimeUnit.MINUTES.toMillis(1);
-
+    private static final int[] ICON_RESOURCES = {
+            0,
+            R.drawable.ic_storm,
+            R.drawable.ic_light_rain,
+            R.drawable.ic_rain,
+            R.drawable.ic_snow,
+            R.drawable.ic_fog,
+            R.drawable.ic_clear,
+            R.drawable.ic_light_clouds,
+            R.drawable.ic_cloudy
+    };
 
     /**
-     * Handler message id for updating the time periodically in interactive mode.
+     * Draw and wake statistics of the engines, see {@link #dump}.
      */
-    private static final int MSG_UPDATE_TIME = 0;
+    final RenderStats mRenderStats = new RenderStats();
 
     @Override
     public Engine onCreateEngine() {
         return new Engine();
     }
 
+    /**
+     * Prints the {@link RenderStats} after the engines:
+     * {@code adb shell dumpsys activity service
+     * com.example.android.sunshine.app/.SunshineWatchFace [reset]}.
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(fd, writer, args);
+        long now = SystemClock.elapsedRealtime();
+        mRenderStats.dump(writer, now);
+        if (args != null && args.length > 0 && "reset".equals(args[0])) {
+            mRenderStats.reset(now);
+            writer.println("Reset");
+        }
+    }
+
     private class Engine extends CanvasWatchFaceService.Engine {
 
         private static final String TAG = "EngineWatchFace";
-        private static final String WEATHER_PATH = "/weather";
-        private static final String WEATHER_TEMP_HIGH_KEY = "weather_temp_high_key";
-        private static final String WEATHER_TEMP_LOW_KEY = "weather_temp_low_key";
-        private static final String WEATHER_TEMP_ICON_KEY = "weather_temp_icon_key";
-        String weather_temp_high;
-        String weather_temp_low;
-        Bitmap weather_temp_icon = null;
+
+        /**
+         * The weather currently shown.  Replaced as a whole by the decode thread.
+         */
+        volatile WeatherSnapshot mWeather = WeatherSnapshot.EMPTY;
+
+        /**
+         * Decodes weather icons off the {@link #mDataListener} thread.  Single threaded, so
+         * updates are applied in the order they arrive.
+         */
+        ExecutorService mDecodeExecutor;
+        final BitmapFactory.Options mDecodeOptions = new BitmapFactory.Options();
+        int mIconSize;
 
         private GoogleApiClient mGoogleApiClient;
 
-        private static final String COLON_STRING = ":";
         final Handler mUpdateTimeHandler = new EngineHandler(this);
 
         final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                mCalendar.setTimeZone(TimeZone.getDefault());
-                initFormats();
+                mRenderer.setTimeZone(TimeZone.getDefault());
                 invalidate();
             }
         };
@@ -116,38 +146,19 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         boolean mAmbient;
 
         /**
-         * How often {@link #mUpdateTimeHandler} ticks in milliseconds.
+         * Whether the colons blink in interactive mode, see R.bool.blink_colons.  They never do
+         * in mute mode, where {@link #mUpdateTimeHandler} only wakes up once a minute.
          */
-        long mInteractiveUpdateRateMs = NORMAL_UPDATE_RATE_MS;
-
-
-        //  Time ;
-        Calendar mCalendar;
-        Date mDate;
+        boolean mBlinkColonsEnabled;
+        boolean mMuteMode;
 
         /**
          * Whether the display supports fewer bits for each color in ambient mode. When true, we
          * disable anti-aliasing in ambient mode.
          */
         boolean mLowBitAmbient;
-        boolean mShouldDrawColons;
-
-        int backgroundColorInteractive;
-        int backgroundColorAmbient;
-        Paint mBackgroundPaint;
-        Paint mLinePaint;
-        Paint mTextPaint_time;
-        Paint mTextPaint_time_light;
-        Paint mTextPaint_date;
-        Paint mTextPaint_temp;
-        Paint mTextPaint_temp_light;
-        Rect mTextBounds = new Rect();
-
-        int lineWidth = 22;
-        int offsetY = 20;
-        int offsetX = 10;
-        float mColonWidth = 0;
-        SimpleDateFormat mDateFormat;
+
+        FaceRenderer mRenderer;
 
         @Override
         public void onCreate(SurfaceHolder holder) {
@@ -162,32 +173,10 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
 
             Resources resources = SunshineWatchFace.this.getResources();
 
-            backgroundColorInteractive = resources.getColor(R.color.digital_background_interactive);
-            backgroundColorAmbient = resources.getColor(R.color.digital_background_ambient);
-
-            mBackgroundPaint = new Paint();
-            mBackgroundPaint.setColor(backgroundColorInteractive);
-
-            mTextPaint_time = createTextPaint(resources.getColor(R.color.main_text));
-            mTextPaint_time_light = createTextPaint(resources.getColor(R.color.main_text), LIGHT_TYPEFACE);
-
-            mTextPaint_date = createTextPaint(resources.getColor(R.color.second_text), LIGHT_TYPEFACE);
-            mTextPaint_date.setAlpha(200);
-
-            mTextPaint_temp = createTextPaint(resources.getColor(R.color.main_text));
-            mTextPaint_temp_light = createTextPaint(resources.getColor(R.color.second_text), LIGHT_TYPEFACE);
-            mTextPaint_temp_light.setAlpha(200);
-
-            mLinePaint = createLinePaint(resources.getColor(R.color.second_text), 0.5f);
-
-
-            mCalendar = Calendar.getInstance();
-            mDate = new Date();
-
-            //
-            mColonWidth = mTextPaint_time.measureText(COLON_STRING) / 2;
-
-            initFormats();
+            mRenderer = new FaceRenderer(resources);
+            mBlinkColonsEnabled = resources.getBoolean(R.bool.blink_colons);
+            mIconSize = resources.getDimensionPixelSize(R.dimen.weather_icon_size);
+            mDecodeExecutor = Executors.newSingleThreadExecutor();
 
             mGoogleApiClient = new GoogleApiClient.Builder(getApplicationContext())
                     .addApi(Wearable.API)
@@ -222,127 +211,206 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         DataApi.DataListener mDataListener = new DataApi.DataListener() {
             @Override
             public void onDataChanged(DataEventBuffer dataEvents) {
-
+                // Only copy the data out here; decoding the payload and the icon happens on
+                // mDecodeExecutor so this thread is never blocked.
+                final ArrayList<DataMap> updates = new ArrayList<>();
                 for (DataEvent event : dataEvents) {
                     if (event.getType() == DataEvent.TYPE_CHANGED) {
                         String path = event.getDataItem().getUri().getPath();
-                        if (WEATHER_PATH.equals(path)) {
-                            Log.v(TAG, "Data Changed for " + WEATHER_PATH);
-                            try {
-                                DataMapItem dataMapItem = DataMapItem.fromDataItem(event.getDataItem());
-                                String tempData = dataMapItem.getDataMap().getString(WEATHER_TEMP_HIGH_KEY);
-                                if (tempData != null)
-                                    weather_temp_high = tempData;
-                                tempData = dataMapItem.getDataMap().getString(WEATHER_TEMP_LOW_KEY);
-
-                                if (tempData != null)
-                                    weather_temp_low = tempData;
-                                Asset photo = dataMapItem.getDataMap().getAsset(WEATHER_TEMP_ICON_KEY);
-
-                                if (photo != null)
-                                    weather_temp_icon = loadBitmapFromAsset(mGoogleApiClient, photo);
-
-                            } catch (Exception e) {
-                                Log.e(TAG, "Exception   ", e);
-                                weather_temp_icon = null;
-                                weather_temp_high= null;
-                                weather_temp_low = null;
-                            }
-
+                        if (WeatherPayload.PATH.equals(path)) {
+                            Log.v(TAG, "Data Changed for " + WeatherPayload.PATH);
+                            updates.add(DataMapItem.fromDataItem(event.getDataItem()).getDataMap());
                         } else {
                             Log.e(TAG, "Unrecognized path:  \"" + path + "\"");
                         }
 
                     }
                 }
-            }
 
-            /**
-             * Extracts {@link android.graphics.Bitmap} data from the
-             * {@link com.google.android.gms.wearable.Asset}
-             */
-            private Bitmap loadBitmapFromAsset(GoogleApiClient apiClient, Asset asset) {
-                if (asset == null) {
-                    throw new IllegalArgumentException("Asset must be non-null");
+                if (!updates.isEmpty()) {
+                    decode(new Runnable() {
+                        @Override
+                        public void run() {
+                            applyWeatherUpdates(updates);
+                        }
+                    });
                 }
-                InputStream assetInputStream = Wearable.DataApi.getFdForAsset(apiClient, asset).await().getInputStream();
+            }
+        };
 
-                if (assetInputStream == null) {
-                    Log.w(TAG, "Requested an unknown Asset.");
-                    return null;
+        /**
+         * Runs the task on {@link #mDecodeExecutor}, unless the engine has been destroyed.  A
+         * data event or a redraw can still come in after that.
+         */
+        void decode(Runnable task) {
+            try {
+                mDecodeExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // shut down, nothing is shown anymore
+            }
+        }
+
+        /**
+         * Decodes the latest payload and publishes today's weather from it.  Runs on
+         * {@link #mDecodeExecutor}.
+         */
+        private void applyWeatherUpdates(List<DataMap> updates) {
+            long start = System.nanoTime();
+            WeatherPayload payload = mWeather.payload;
+            try {
+                for (DataMap dataMap : updates) {
+                    byte[] data = dataMap.getByteArray(WeatherPayload.KEY);
+                    if (data != null) {
+                        payload = WeatherPayload.fromBytes(data);
+                    }
                 }
-                return BitmapFactory.decodeStream(assetInputStream);
+            } catch (IllegalArgumentException e) {
+                Log.e(TAG, "Discarding malformed weather payload", e);
+                payload = null;
             }
+            publishWeather(payload);
+            mRenderStats.recordDecode(System.nanoTime() - start);
+        }
 
+        /**
+         * Re-selects today's forecast from the current payload, e.g. after the date changed.
+         */
+        final Runnable mRefreshWeather = new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                publishWeather(mWeather.payload);
+                mRenderStats.recordDecode(System.nanoTime() - start);
+            }
         };
 
+        /**
+         * Builds the snapshot for today's entry of the payload, decoding its icon if it changed,
+         * and publishes it as a whole.  Runs on {@link #mDecodeExecutor}.
+         */
+        private void publishWeather(WeatherPayload payload) {
+            WeatherSnapshot current = mWeather;
+            WeatherSnapshot weather;
 
+            long now = System.currentTimeMillis();
+            int today = WeatherPayload.toDay(now, TimeZone.getDefault());
+            int index = payload != null ? payload.getDayIndex(today) : -1;
+            if (index >= 0) {
+                String high = TemperatureFormatter.formatFixedPoint(payload.highs[index],
+                        payload.metric);
+                String low = TemperatureFormatter.formatFixedPoint(payload.lows[index],
+                        payload.metric);
+                int iconResId = ICON_RESOURCES[
+                        WeatherConditions.getCondition(payload.weatherIds[index])];
+                Bitmap icon = iconResId == current.iconResId
+                        ? current.icon : loadIcon(iconResId);
+                weather = new WeatherSnapshot(payload, high, low, iconResId, icon);
+            } else {
+                // nothing for today, keep the payload in case it covers a later day
+                weather = new WeatherSnapshot(payload, null, null, 0, null);
+            }
 
-
-        @Override
-        public void onDestroy() {
-            mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
-            super.onDestroy();
+            mWeather = weather;
+            invalidateStaticLayer();
         }
 
-        private Paint createTextPaint(int textColor) {
-            return createTextPaint(textColor, NORMAL_TYPEFACE);
-        }
+        /**
+         * Decodes a bundled weather icon, subsampled to about the size we draw it at and reusing
+         * the memory of an icon that is no longer shown when possible.
+         */
+        private Bitmap loadIcon(int iconResId) {
+            if (iconResId == 0) {
+                return null;
+            }
+            Resources resources = getResources();
+
+            BitmapFactory.Options options = mDecodeOptions;
+            options.inJustDecodeBounds = true;
+            options.inSampleSize = 1;
+            options.inBitmap = null;
+            BitmapFactory.decodeResource(resources, iconResId, options);
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                return null;
+            }
 
-        private Paint createTextPaint(int textColor, Typeface typeface) {
-            Paint paint = new Paint();
-            paint.setColor(textColor);
-            paint.setTypeface(typeface);
-            paint.setAntiAlias(true);
-            return paint;
+            int sampleSize = 1;
+            while (options.outWidth / (sampleSize * 2) >= mIconSize
+                    && options.outHeight / (sampleSize * 2) >= mIconSize) {
+                sampleSize *= 2;
+            }
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = sampleSize;
+            options.inMutable = true;
+
+            Bitmap reusable = mRenderer.takeReusableIcon();
+            int width = (options.outWidth + sampleSize - 1) / sampleSize;
+            int height = (options.outHeight + sampleSize - 1) / sampleSize;
+            if (reusable != null && !reusable.isRecycled()
+                    && reusable.getAllocationByteCount() >= width * height * 4) {
+                options.inBitmap = reusable;
+            }
+            try {
+                return BitmapFactory.decodeResource(resources, iconResId, options);
+            } catch (IllegalArgumentException e) {
+                // the reused bitmap did not fit after all
+                options.inBitmap = null;
+                return BitmapFactory.decodeResource(resources, iconResId, options);
+            } finally {
+                options.inBitmap = null;
+            }
         }
 
-        private Paint createLinePaint(int textColor, float strokeWidth) {
-            Paint paint = new Paint();
-            paint.setColor(textColor);
-            paint.setStrokeWidth(strokeWidth);
-            paint.setAntiAlias(true);
-            return paint;
-        }
 
-        private void initFormats() {
-            mDateFormat = new SimpleDateFormat("ccc, MMM d yyyy", Locale.getDefault());
-            mDateFormat.setCalendar(mCalendar);
+        @Override
+        public void onDestroy() {
+            mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            // no more data events first, so none arrives for a shut down executor
+            if (mGoogleApiClient != null && mGoogleApiClient.isConnected()) {
+                Wearable.DataApi.removeListener(mGoogleApiClient, mDataListener);
+                mGoogleApiClient.disconnect();
+            }
+            mDecodeExecutor.shutdownNow();
+            mRenderer.recycle();
+            super.onDestroy();
         }
 
-
         @Override
         public void onInterruptionFilterChanged(int interruptionFilter) {
             super.onInterruptionFilterChanged(interruptionFilter);
             boolean inMuteMode = interruptionFilter == WatchFaceService.INTERRUPTION_FILTER_NONE;
             // We only need to update once a minute in mute mode.
-            setInteractiveUpdateRateMs(inMuteMode ? MUTE_UPDATE_RATE_MS : NORMAL_UPDATE_RATE_MS);
+            setMuteMode(inMuteMode);
         }
 
-        public void setInteractiveUpdateRateMs(long updateRateMs) {
-            if (updateRateMs == mInteractiveUpdateRateMs) {
+        public void setMuteMode(boolean inMuteMode) {
+            if (inMuteMode == mMuteMode) {
                 return;
             }
-            mInteractiveUpdateRateMs = updateRateMs;
+            mMuteMode = inMuteMode;
             // Stop and restart the timer so the new update rate takes effect immediately.
             if (shouldTimerBeRunning()) {
                 updateTimer();
             }
         }
 
+        private boolean shouldBlinkColons() {
+            return mBlinkColonsEnabled && !mMuteMode;
+        }
+
 
         @Override
         public void onVisibilityChanged(boolean visible) {
             super.onVisibilityChanged(visible);
+            mRenderStats.setVisible(visible, SystemClock.elapsedRealtime());
 
             if (visible) {
                 registerReceiver();
 
                 // Update time zone in case it changed while we weren't visible.
-                mCalendar.setTimeZone(TimeZone.getDefault());
-                initFormats();
+                mRenderer.setTimeZone(TimeZone.getDefault());
             } else {
                 unregisterReceiver();
+                logRenderStats();
             }
 
             // Whether the timer should be running depends on whether we're visible (as well as
@@ -350,6 +418,21 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             updateTimer();
         }
 
+        /**
+         * Writes the {@link RenderStats} to the log, when enabled with
+         * {@code adb shell setprop log.tag.EngineWatchFace DEBUG}.
+         */
+        private void logRenderStats() {
+            if (!Log.isLoggable(TAG, Log.DEBUG)) {
+                return;
+            }
+            StringWriter out = new StringWriter();
+            PrintWriter writer = new PrintWriter(out);
+            mRenderStats.dump(writer, SystemClock.elapsedRealtime());
+            writer.flush();
+            Log.d(TAG, out.toString());
+        }
+
         private void registerReceiver() {
             if (mRegisteredTimeZoneReceiver) {
                 return;
@@ -371,14 +454,8 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         public void onApplyWindowInsets(WindowInsets insets) {
             super.onApplyWindowInsets(insets);
 
-            Resources resources = SunshineWatchFace.this.getResources();
-
-            mTextPaint_time_light.setTextSize(resources.getDimension(R.dimen.time_text_size));
-            mTextPaint_time.setTextSize(resources.getDimension(R.dimen.time_text_size));
-            mTextPaint_date.setTextSize(resources.getDimension(R.dimen.date_text_size));
-            mTextPaint_temp_light.setTextSize(resources.getDimension(R.dimen.temp_text_size));
-            mTextPaint_temp.setTextSize(resources.getDimension(R.dimen.temp_text_size));
-
+            mRenderer.setTextSizes(SunshineWatchFace.this.getResources());
+            invalidate();
         }
 
         @Override
@@ -390,6 +467,7 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         @Override
         public void onTimeTick() {
             super.onTimeTick();
+            mRenderStats.recordAmbientTick();
             invalidate();
         }
 
@@ -397,18 +475,8 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         public void onAmbientModeChanged(boolean inAmbientMode) {
             super.onAmbientModeChanged(inAmbientMode);
             if (mAmbient != inAmbientMode) {
-
-                mBackgroundPaint.setColor(inAmbientMode ? backgroundColorAmbient : backgroundColorInteractive);
-
                 mAmbient = inAmbientMode;
-                if (mLowBitAmbient) {
-                    mTextPaint_time.setAntiAlias(!inAmbientMode);
-                    mTextPaint_time_light.setAntiAlias(!inAmbientMode);
-                    mTextPaint_date.setAntiAlias(!inAmbientMode);
-                    mTextPaint_temp.setAntiAlias(!inAmbientMode);
-                    mTextPaint_temp_light.setAntiAlias(!inAmbientMode);
-                    mLinePaint.setAntiAlias(!inAmbientMode);
-                }
+                mRenderer.setAmbient(inAmbientMode, mLowBitAmbient);
                 invalidate();
             }
 
@@ -420,85 +488,32 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
 
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
-            // Draw the background.
-            canvas.drawRect(0, 0, bounds.width(), bounds.height(), mBackgroundPaint);
+            long drawStart = System.nanoTime();
 
             // update time
             long now = System.currentTimeMillis();
-            mCalendar.setTimeInMillis(now);
-            mDate.setTime(now);
-
-            int centerX = bounds.width() / 2;
-            int centerY = bounds.height() / 2;
-
-            float offsetX_tmp;
-            float offsetY_tmp;
-            String text;
-            String text2;
 
             // Show colons for the first half of each second so the colons blink on when the time
-            // updates.
-            mShouldDrawColons = (now % 1000) < 500;
-
-            // draw date
-            text = mDateFormat.format(mDate).toUpperCase();
-            mTextPaint_date.getTextBounds(text, 0, text.length(), mTextBounds);
-            if (!mAmbient)
-                canvas.drawText(text, centerX - mTextBounds.width() / 2, centerY, mTextPaint_date);
-            offsetY_tmp = mTextBounds.height();
-
-
-            // draw time (hour)
-            text = String.format("%02d", mCalendar.get(Calendar.HOUR_OF_DAY));
-            offsetX_tmp = (int) mTextPaint_time.measureText(text + COLON_STRING);
-
-            // blinking Colons
-            if (!mAmbient && mShouldDrawColons) text = text + COLON_STRING;
-
-            // draw time (minute)
-            text2 = String.format("%02d", mCalendar.get(Calendar.MINUTE));
-            mTextPaint_time_light.getTextBounds(text2, 0, text2.length(), mTextBounds);
-            offsetX_tmp = offsetX_tmp + mTextBounds.width();
-
-            canvas.drawText(text,
-                    centerX - offsetX_tmp / 2,
-                    centerY - offsetY + 4 - offsetY_tmp,
-                    mTextPaint_time);
-            canvas.drawText(text2,
-                    centerX + ((offsetX_tmp / 2) - mTextBounds.width()),
-                    centerY - offsetY + 4 - offsetY_tmp,
-                    mTextPaint_time_light);
-
-
-            if (!mAmbient) {
-                // draw line
-                offsetY_tmp = offsetY;
-                canvas.drawLine(centerX - lineWidth, centerY + offsetY, centerX + lineWidth, centerY + offsetY_tmp, mLinePaint);
-
-                if (weather_temp_high != null && weather_temp_low != null) {
-                    // draw temperature high
-                    mTextPaint_temp.getTextBounds(weather_temp_high, 0, weather_temp_high.length(), mTextBounds);
-                    offsetY_tmp = mTextBounds.height() + offsetY + offsetY_tmp;
-                    canvas.drawText(weather_temp_high, centerX - mTextBounds.width() / 2, centerY + offsetY_tmp, mTextPaint_temp);
-
-                    // draw temperature low
-                    canvas.drawText(weather_temp_low, centerX + mTextBounds.width() / 2 + offsetX, centerY + offsetY_tmp, mTextPaint_temp_light);
-
-                    if (weather_temp_icon != null) {
-                        // draw weather icon
-                        canvas.drawBitmap(weather_temp_icon,
-                                centerX - mTextBounds.width() / 2 - offsetX - weather_temp_icon.getWidth(),
-                                centerY + offsetY_tmp - weather_temp_icon.getHeight() / 2 - mTextBounds.height() / 2, null);
-                    }
-                } else {
-                    // draw temperature high
-                    text = getString(R.string.no_weather_info);
-                    mTextPaint_date.getTextBounds(text, 0, text.length(), mTextBounds);
-                    offsetY_tmp = mTextBounds.height() + offsetY + offsetY_tmp;
-                    canvas.drawText(text, centerX - mTextBounds.width() / 2, centerY + offsetY_tmp, mTextPaint_date);
-
-                }
+            // updates, or all the time if they don't blink.
+            boolean drawColons = !shouldBlinkColons() || TickScheduler.isColonVisible(now);
+
+            WeatherSnapshot weather = mWeather;
+            if (mRenderer.drawFrame(canvas, bounds.width(), bounds.height(), now, weather,
+                    drawColons) && weather.payload != null) {
+                // show the forecast for the new day
+                decode(mRefreshWeather);
             }
+
+            mRenderStats.recordDraw(System.nanoTime() - drawStart, mAmbient);
+        }
+
+        /**
+         * Marks the renderer's static layer as stale and schedules a redraw.  Safe to call from
+         * any thread.
+         */
+        void invalidateStaticLayer() {
+            mRenderer.invalidateStaticLayer();
+            postInvalidate();
         }
 
 
@@ -508,6 +523,8 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
          */
         private void updateTimer() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            // the next tick comes right away, not when one was scheduled for
+            mRenderStats.cancelTick();
             if (shouldTimerBeRunning()) {
                 mUpdateTimeHandler.sendEmptyMessage(MSG_UPDATE_TIME);
             }
@@ -525,10 +542,14 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
          * Handle updating the time periodically in interactive mode.
          */
         private void handleUpdateTimeMessage() {
+            mRenderStats.recordTick(SystemClock.elapsedRealtime(), mMuteMode);
             invalidate();
             if (shouldTimerBeRunning()) {
+                // sleep until the face looks different: the colons toggle or the minute changes
                 long timeMs = System.currentTimeMillis();
-                long delayMs = mInteractiveUpdateRateMs - (timeMs % mInteractiveUpdateRateMs);
+                long delayMs = TickScheduler.delayUntilNextChange(timeMs,
+                        mRenderer.getTimeZone().getOffset(timeMs), shouldBlinkColons());
+                mRenderStats.scheduleTick(SystemClock.elapsedRealtime() + delayMs);
                 mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
             }
         }
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.graphics.Bitmap;
+
+import com.example.android.sunshine.common.WeatherPayload;
+
+/**
+ * Immutable weather shown by the watch face.  A new snapshot is published as a whole each time
+ * data arrives from the phone or the day changes, so the draw thread never sees a half-applied update.
+ */
+final class WeatherSnapshot {
+
+    static final WeatherSnapshot EMPTY = new WeatherSnapshot(null, null, null, 0, null);
+
+    /**
+     * The whole forecast received from the phone, or null.
+     */
+    final WeatherPayload payload;
+
+    // today's entry of the payload, ready to draw
+    final String high;
+    final String low;
+    final int iconResId;
+    final Bitmap icon;
+
+    WeatherSnapshot(WeatherPayload payload, String high, String low, int iconResId, Bitmap icon) {
+        this.payload = payload;
+        this.high = high;
+        this.low = low;
+        this.iconResId = iconResId;
+        this.icon = icon;
+    }
+
+    boolean hasTemperatures() {
+        return high != null && low != null;
+    }
+}